@@ -0,0 +1,57 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging a version jar and a shared library into one jar, the way the 1.16 locator does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExtractNestedJarBenchmark {
+    private static final String VERSION_JAR = "META-INF/forgix/multiversion/mod.jar";
+    private static final String SHARED_LIBRARY = "META-INF/forgix/multiversion/shared.multiversion.jar";
+
+    @Param({ "100", "2000" })
+    public int entryCount;
+
+    @Param({ "1024", "16384" })
+    public int entrySize;
+
+    @Param({ "RAW_COPY", "RECOMPRESS" })
+    public Forgix.MergeMode mergeMode;
+
+    private Map<String, byte[]> resources;
+    private Path outputJar;
+
+    @Setup
+    public void setup() throws IOException {
+        resources = Map.of(
+                VERSION_JAR, SyntheticJars.jar("version", entryCount, entrySize, 1),
+                SHARED_LIBRARY, SyntheticJars.jar("shared", entryCount, entrySize, 2)
+        );
+        outputJar = Files.createTempFile("forgix-benchmark", ".jar");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(outputJar);
+    }
+
+    @Benchmark
+    public Path extractNestedJar() {
+        Forgix.extractNestedJar(path -> {
+            var bytes = resources.get(path);
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }, VERSION_JAR, SHARED_LIBRARY, outputJar, mergeMode);
+        return outputJar;
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.versioning.ForgixVersionJson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing realistic multiversion.json manifests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManifestParsingBenchmark {
+    @Param({ "2", "10", "50", "500" })
+    public int rangeCount;
+
+    private byte[] manifest;
+
+    @Setup
+    public void setup() {
+        manifest = SyntheticJars.manifest(rangeCount, true);
+    }
+
+    @Benchmark
+    public ForgixVersionJson getForgixVersionJson() {
+        return Forgix.getForgixVersionJson(new ByteArrayInputStream(manifest));
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.cache.ExplodedJars;
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.discovery.ManifestProbe;
+import io.github.pacifistmc.forgix.multiversion.discovery.MultiversionDiscovery;
+import io.github.pacifistmc.forgix.multiversion.fs.NestedJarMounter;
+import io.github.pacifistmc.forgix.multiversion.fs.NestedJarMounts;
+import io.github.pacifistmc.forgix.multiversion.fs.StoredNestedJars;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupPhase;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * A simulation of every locator's flow, given the mods FML already found and the running Minecraft version.
+ * <p>
+ * The locators themselves need a running FML, so they are not run here. Every {@link Platform} re-implements its
+ * locator's flow on top of the same common code the locator calls (probing, version selection, {@link NestedJarMounter}),
+ * in the same order and on the same threads. What FML provides is simulated: its jij file system by a zip file system
+ * over the nested jar in the open mod jar, which is what jij is built on, and building a mod file by what dominates it
+ * in FML, scanning every entry of the mounted jar for its packages and reading its manifest.
+ * <p>
+ * Not covered, since it only exists inside FML and securejarhandler: the locators' own code, and the loader reading a
+ * mod file from a {@code forgix-zip} root, i.e. SecureJar and JarContents on Forge and NeoForge and the 1.16 ModFile.
+ * A regression there only shows up in a game launch.
+ */
+final class SimulatedLocatorFlows implements Closeable {
+    enum Platform {
+        /**
+         * ForgeMultiversionLocator: every candidate is mounted and its mod file built on the discovery workers.
+         */
+        FORGE("forge"),
+        /**
+         * NeoForgeMultiversionLocator: every candidate is mounted on the discovery workers, the mod files are then
+         * read by the pipeline one after the other on the calling thread.
+         */
+        NEOFORGE("neoforge"),
+        /**
+         * The 1.16 ForgeMultiversionLocator: every Forgix jar brings its own locator, which merges its own nested jars
+         * in memory; FML runs the locators one after the other.
+         */
+        FORGE_1_16("forge_1_16");
+
+        private final String key;
+
+        Platform(String key) {
+            this.key = key;
+        }
+
+        String getKey() {
+            return key;
+        }
+    }
+
+    private record Candidate(Path path, Forgix.ResourceOpener resources) { }
+
+    private record Mounted(Path path, String versionPath, List<Path> roots) { }
+
+    private final List<Path> loadedMods;
+    private final String minecraftVersion;
+    private final NestedJarMounter mounter;
+    private final Queue<FileSystem> modFileSystems = new ConcurrentLinkedQueue<>();
+    private final Queue<NestedJarMounter.Mounted> mounted = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param loadedMods       The mods FML found
+     * @param minecraftVersion The running Minecraft version
+     * @param platform         The platform whose jij mounts are pooled
+     * @param cacheDirectory   Where nested jars are exploded to when {@link ExplodedJars#ENABLED}, like the mods
+     *                         directory's cache
+     */
+    SimulatedLocatorFlows(List<Path> loadedMods, String minecraftVersion, Platform platform, Path cacheDirectory) {
+        this.loadedMods = loadedMods;
+        this.minecraftVersion = minecraftVersion;
+        this.mounter = new NestedJarMounter(NestedJarMounts.forPlatform(platform.getKey()), (uri, nestedJar) -> FileSystems.newFileSystem(nestedJar),
+                new ExtractionCache(cacheDirectory, ExtractionCache.DEFAULT_MAX_SIZE), (message, e) -> { });
+    }
+
+    /**
+     * Runs a platform's locator flow over the loaded mods.
+     *
+     * @param platform The platform
+     * @param timings  Where the phases are recorded
+     * @return The number of mod files built
+     */
+    int scanMods(Platform platform, StartupTimings timings) throws IOException {
+        var candidates = findMultiversionMods(timings);
+        return switch (platform) {
+            case FORGE -> MultiversionDiscovery.resolveAll(candidates, candidate -> mount(candidate, timings)
+                    .map(mounted -> buildModFile(mounted, timings))).size();
+            case NEOFORGE -> {
+                int modFiles = 0;
+                for (var mounted : MultiversionDiscovery.resolveAll(candidates, candidate -> mount(candidate, timings))) {
+                    buildModFile(mounted, timings);
+                    modFiles++;
+                }
+                yield modFiles;
+            }
+            case FORGE_1_16 -> {
+                int modFiles = 0;
+                for (var candidate : candidates) {
+                    if (mountInMemory(candidate, timings).map(mounted -> buildModFile(mounted, timings)).isPresent()) modFiles++;
+                }
+                yield modFiles;
+            }
+        };
+    }
+
+    // FML already holds the loaded mods open, here every mod is probed the way the locators probe their own jar
+    private List<Candidate> findMultiversionMods(StartupTimings timings) throws IOException {
+        List<Candidate> candidates = new ArrayList<>();
+        for (var mod : loadedMods) {
+            try (var phase = timings.start(StartupPhase.SELF_JAR, mod.getFileName())) {
+                var resources = ManifestProbe.probe(mod);
+                if (resources != null && MultiversionDiscovery.claim(mod)) candidates.add(new Candidate(mod, resources));
+                phase.addBytes(Files.size(mod));
+            }
+        }
+        return candidates;
+    }
+
+    // FML holds every mod jar open already, so the jij mounts in it stay usable as long as the stand-in is open
+    private Optional<Mounted> mount(Candidate candidate, StartupTimings timings) {
+        try {
+            var selection = Forgix.selectVersion(candidate.path(), candidate.resources(), minecraftVersion, timings);
+            if (selection == null) return Optional.empty();
+            try (var phase = timings.start(StartupPhase.MOUNT, selection.versionPath())) {
+                var modFileSystem = FileSystems.newFileSystem(candidate.path());
+                modFileSystems.add(modFileSystem);
+                var mounted = mounter.mount(candidate.path(), selection.versionPath(), selection.sharedLibrary(), modFileSystem::getPath, phase);
+                this.mounted.add(mounted);
+                return Optional.of(new Mounted(candidate.path(), selection.versionPath(), mounted.roots()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to mount " + candidate.path(), e);
+        }
+    }
+
+    private Optional<Mounted> mountInMemory(Candidate candidate, StartupTimings timings) {
+        try {
+            var selection = Forgix.selectVersion(candidate.path(), candidate.resources(), minecraftVersion, timings);
+            if (selection == null) return Optional.empty();
+            return timings.time(StartupPhase.MOUNT, selection.versionPath(), () -> {
+                var fileSystem = Forgix.mountNestedJars(candidate.resources(), StoredNestedJars.mapModJar(candidate.path()),
+                        selection.versionPath(), selection.sharedLibrary());
+                return Optional.of(new Mounted(candidate.path(), selection.versionPath(), List.of(fileSystem.getRoot())));
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The packages of the jar and its manifest, which is what FML reads off every jar before it can build a mod file
+    private static Set<String> buildModFile(Mounted mounted, StartupTimings timings) {
+        try (var phase = timings.start(StartupPhase.MOD_FILE, mounted.versionPath())) {
+            Set<String> packages = new HashSet<>();
+            for (var root : mounted.roots()) {
+                try (var files = Files.walk(root)) {
+                    files.filter(Files::isRegularFile).forEach(file -> {
+                        var name = root.relativize(file).toString().replace(root.getFileSystem().getSeparator(), "/");
+                        if (name.endsWith(".class") && name.lastIndexOf('/') > 0) packages.add(name.substring(0, name.lastIndexOf('/')).replace('/', '.'));
+                    });
+                }
+            }
+            // The first root that has a manifest is the one FML reads
+            for (var root : mounted.roots()) {
+                var manifest = root.resolve(JarFile.MANIFEST_NAME);
+                if (!Files.exists(manifest)) continue;
+                try (var inputStream = Files.newInputStream(manifest)) {
+                    new Manifest(inputStream);
+                }
+                phase.addBytes(Files.size(manifest));
+                break;
+            }
+            return packages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan " + mounted.versionPath() + " from " + mounted.path(), e);
+        }
+    }
+
+    // What FML does once the mod files are gone
+    @Override
+    public void close() throws IOException {
+        mounted.forEach(NestedJarMounter.Mounted::release);
+        for (var modFileSystem : modFileSystems) {
+            modFileSystem.close();
+        }
+    }
+}
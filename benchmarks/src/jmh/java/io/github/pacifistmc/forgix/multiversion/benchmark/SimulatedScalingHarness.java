@@ -0,0 +1,289 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How the simulated locator startup scales with the size of the pack, which the microbenchmarks can't show.
+ * <p>
+ * A synthetic pack is generated once, then every platform's simulated locator flow (see {@link SimulatedLocatorFlows}
+ * for what it doesn't cover) is run over growing prefixes of it. Every run gets a fresh JVM, so it starts as cold as the game does and its peak RSS is its own. The
+ * median wall time, allocation and peak RSS of every pack size are reported, and the run fails when time or
+ * allocation grows faster with the pack size than {@code --max-exponent} allows.
+ * <p>
+ * Run with ./gradlew :benchmarks:simulatedScalingHarness --args='--mods 50,100,300 --platforms forge,forge_1_16', options:
+ * <pre>
+ * --mods 25,50,100,200,300   Pack sizes
+ * --platforms all            forge, neoforge, forge_1_16 or all
+ * --ranges 4                 Version ranges per Forgix mod
+ * --entries 100              Entries per version jar
+ * --entry-size 1024          Bytes per entry
+ * --shared-entries 200       Entries in the shared library, 0 for none
+ * --forgix-every 1           Every nth mod is packaged with Forgix, the rest are plain jars
+ * --compressed               Deflate the nested jars instead of storing them
+ * --identical-shared         Every mod ships the same shared library
+ * --exploded                 Explode the nested jars into a cache next to the pack, the first run fills it
+ * --runs 3                   Runs per pack size, the median is reported
+ * --max-exponent 1.25        Fail if time or allocation grows faster than size^exponent
+ * --output results.csv       Also write the results as CSV
+ * --pack-dir dir             Where to generate the pack, a temporary directory by default
+ * </pre>
+ * Peak RSS is read from /proc, so it's only reported on Linux.
+ */
+public final class SimulatedScalingHarness {
+    private static final String RESULT_PREFIX = "forgix-scaling-result ";
+
+    private SimulatedScalingHarness() { }
+
+    private record Result(SimulatedLocatorFlows.Platform platform, int mods, int modFiles, double wallMillis, long allocatedBytes, long peakRssKb) { }
+
+    public static void main(String[] args) throws Exception {
+        var options = parseOptions(args);
+        if (options.containsKey("child")) {
+            runChild(options);
+            return;
+        }
+
+        var pack = pack(options);
+        int[] sizes = Arrays.stream(options.getOrDefault("mods", "25,50,100,200,300").split(",")).mapToInt(size -> Integer.parseInt(size.trim())).sorted().toArray();
+        var platforms = parsePlatforms(options.getOrDefault("platforms", "all"));
+        int runs = Math.max(1, intOption(options, "runs", 3));
+        double maxExponent = Double.parseDouble(options.getOrDefault("max-exponent", "1.25"));
+
+        var packDir = options.containsKey("pack-dir") ? Path.of(options.get("pack-dir")) : Files.createTempDirectory("forgix-scaling");
+        System.out.printf(Locale.ROOT, "Generating %d mods in %s%n", sizes[sizes.length - 1], packDir);
+        pack.write(packDir, sizes[sizes.length - 1]);
+
+        List<Result> results = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%-11s %6s %9s %10s %12s %13s%n", "platform", "mods", "modFiles", "wall.ms", "alloc.MB", "peakRss.MB");
+        for (var platform : platforms) {
+            for (int size : sizes) {
+                List<Result> samples = new ArrayList<>();
+                for (int run = 0; run < runs; run++) samples.add(runInChild(platform, size, packDir, args));
+                var result = median(samples);
+                results.add(result);
+                System.out.printf(Locale.ROOT, "%-11s %6d %9d %10.1f %12.1f %13s%n", platform.getKey(), result.mods(), result.modFiles(),
+                        result.wallMillis(), result.allocatedBytes() / 1048576.0, result.peakRssKb() < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f", result.peakRssKb() / 1024.0));
+            }
+        }
+
+        if (options.containsKey("output")) writeCsv(Path.of(options.get("output")), results);
+        if (!checkScaling(results, platforms, maxExponent)) System.exit(1);
+    }
+
+    private static Result runInChild(SimulatedLocatorFlows.Platform platform, int mods, Path packDir, String[] args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (List.of(args).contains("--exploded")) command.add("-Dforgix.multiversion.explodeNestedJars=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SimulatedScalingHarness.class.getName());
+        command.addAll(List.of(args));
+        command.addAll(List.of("--child", "--platform", platform.name(), "--child-mods", Integer.toString(mods), "--pack-dir", packDir.toString()));
+
+        var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Result result = null;
+        var output = new StringBuilder();
+        try (var reader = process.inputReader(StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    var fields = line.substring(RESULT_PREFIX.length()).split(" ");
+                    result = new Result(platform, mods, Integer.parseInt(fields[0]), Double.parseDouble(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Run of " + platform.getKey() + " with " + mods + " mods failed:\n" + output);
+        }
+        return result;
+    }
+
+    // A single measured run, in its own JVM
+    private static void runChild(Map<String, String> options) throws IOException, InterruptedException {
+        var pack = pack(options);
+        var platform = SimulatedLocatorFlows.Platform.valueOf(options.get("platform"));
+        var packDir = Path.of(options.get("pack-dir"));
+        var mods = pack.write(packDir, intOption(options, "child-mods", 0));
+        var timings = StartupTimings.forPlatform(platform.getKey());
+
+        int modFiles;
+        long nanos;
+        long allocated;
+        try (var flows = new SimulatedLocatorFlows(mods, pack.minecraftVersion(), platform, packDir.resolve(".forgix-multiversion-jars"))) {
+            resetPeakRss();
+            var allocation = HeapAllocation.start();
+            long start = System.nanoTime();
+            modFiles = flows.scanMods(platform, timings);
+            nanos = System.nanoTime() - start;
+            allocated = allocation.stop();
+        }
+
+        System.out.println(timings.summary());
+        System.out.println(RESULT_PREFIX + modFiles + " " + String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0) + " " + allocated + " " + peakRssKb());
+    }
+
+    /**
+     * Everything allocated on the heap since it was started: what every collection freed plus how much the heap grew.
+     * Unlike the per-thread counters it includes the discovery workers, which are gone by the time the flow returns.
+     */
+    private static final class HeapAllocation implements NotificationListener {
+        private final Set<String> heapPools = new HashSet<>();
+        private final AtomicLong freed = new AtomicLong();
+        private final AtomicLong notifications = new AtomicLong();
+        private final long usedAtStart;
+        private final long collectionsAtStart;
+
+        private HeapAllocation() {
+            for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+            }
+            for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter emitter) emitter.addNotificationListener(this, null, null);
+            }
+            usedAtStart = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            collectionsAtStart = collections();
+        }
+
+        static HeapAllocation start() {
+            return new HeapAllocation();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+            long before = 0;
+            long after = 0;
+            for (var pool : heapPools) {
+                var usageBefore = info.getMemoryUsageBeforeGc().get(pool);
+                var usageAfter = info.getMemoryUsageAfterGc().get(pool);
+                if (usageBefore != null) before += usageBefore.getUsed();
+                if (usageAfter != null) after += usageAfter.getUsed();
+            }
+            freed.addAndGet(Math.max(0, before - after));
+            notifications.incrementAndGet();
+        }
+
+        // Notifications are delivered asynchronously, so wait for every collection that happened so far
+        long stop() throws InterruptedException {
+            long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            long expected = collections() - collectionsAtStart;
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (notifications.get() < expected && System.nanoTime() < deadline) Thread.sleep(1);
+            return freed.get() + used - usedAtStart;
+        }
+
+        private static long collections() {
+            long collections = 0;
+            for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) collections += Math.max(0, collector.getCollectionCount());
+            return collections;
+        }
+    }
+
+    // Writing 5 to clear_refs resets the peak RSS, so the JVM's own startup isn't counted
+    private static void resetPeakRss() {
+        try {
+            Files.writeString(Path.of("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException ignored) { }
+    }
+
+    private static long peakRssKb() {
+        try {
+            for (var line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim());
+            }
+        } catch (IOException | NumberFormatException ignored) { }
+        return -1;
+    }
+
+    private static Result median(List<Result> samples) {
+        List<Result> sorted = new ArrayList<>(samples);
+        sorted.sort((a, b) -> Double.compare(a.wallMillis(), b.wallMillis()));
+        return sorted.get(sorted.size() / 2);
+    }
+
+    // How time and allocation grow from the smallest to the largest pack, as the exponent of size^exponent
+    private static boolean checkScaling(List<Result> results, List<SimulatedLocatorFlows.Platform> platforms, double maxExponent) {
+        boolean ok = true;
+        for (var platform : platforms) {
+            var platformResults = results.stream().filter(result -> result.platform() == platform).toList();
+            var smallest = platformResults.get(0);
+            var largest = platformResults.get(platformResults.size() - 1);
+            if (largest.mods() <= smallest.mods() || smallest.mods() == 0) continue;
+
+            double sizeRatio = Math.log((double) largest.mods() / smallest.mods());
+            double timeExponent = Math.log(largest.wallMillis() / smallest.wallMillis()) / sizeRatio;
+            double allocationExponent = smallest.allocatedBytes() <= 0 ? 0 : Math.log((double) largest.allocatedBytes() / smallest.allocatedBytes()) / sizeRatio;
+            boolean regressed = timeExponent > maxExponent || allocationExponent > maxExponent;
+            System.out.printf(Locale.ROOT, "%-11s time ~ mods^%.2f, allocation ~ mods^%.2f%s%n", platform.getKey(), timeExponent, allocationExponent,
+                    regressed ? " (exceeds mods^" + maxExponent + ")" : "");
+            ok &= !regressed;
+        }
+        return ok;
+    }
+
+    private static void writeCsv(Path output, List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("platform,mods,modFiles,wallMillis,allocatedBytes,peakRssKb");
+        for (var result : results) {
+            lines.add(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%d,%d", result.platform().getKey(), result.mods(), result.modFiles(),
+                    result.wallMillis(), result.allocatedBytes(), result.peakRssKb()));
+        }
+        Files.write(output, lines);
+    }
+
+    private static List<SimulatedLocatorFlows.Platform> parsePlatforms(String platforms) {
+        if (platforms.equals("all")) return List.of(SimulatedLocatorFlows.Platform.values());
+        List<SimulatedLocatorFlows.Platform> parsed = new ArrayList<>();
+        for (var key : platforms.split(",")) {
+            parsed.add(Arrays.stream(SimulatedLocatorFlows.Platform.values()).filter(platform -> platform.getKey().equals(key.trim())).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown platform " + key)));
+        }
+        return parsed;
+    }
+
+    // --name value pairs, flags without a value map to "true"; later occurrences win
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            var name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) options.put(name, args[++i]);
+            else options.put(name, "true");
+        }
+        return options;
+    }
+
+    private static SyntheticPack pack(Map<String, String> options) {
+        return new SyntheticPack(intOption(options, "ranges", 4), intOption(options, "entries", 100), intOption(options, "entry-size", 1024),
+                intOption(options, "shared-entries", 200), Math.max(1, intOption(options, "forgix-every", 1)), options.containsKey("compressed"),
+                options.containsKey("identical-shared"));
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deterministic synthetic manifests and jars for the benchmarks.
+ */
+final class SyntheticJars {
+    private static final long FIXED_TIME = 946684800000L; // 2000-01-01, within what a zip entry can hold
+
+    private SyntheticJars() { }
+
+    /**
+     * Version ranges shaped like real manifests: consecutive, non-overlapping ranges over release versions, e.g.
+     * [1.0.0,1.0.1), [1.0.1,1.0.2), ... with the last one left open.
+     */
+    static Map<String, String> ranges(int count) {
+        Map<String, String> ranges = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            var lower = version(i);
+            var range = i == count - 1 ? "[" + lower + ",)" : "[" + lower + "," + version(i + 1) + ")";
+            ranges.put(range, "META-INF/forgix/multiversion/mod-" + i + ".jar");
+        }
+        return ranges;
+    }
+
+    static String version(int index) {
+        return "1." + (index / 10) + "." + (index % 10);
+    }
+
+    static byte[] manifest(int rangeCount, boolean sharedLibrary) {
+        var json = new StringBuilder("{\n  \"versions\": {\n");
+        var ranges = ranges(rangeCount);
+        int i = 0;
+        for (var entry : ranges.entrySet()) {
+            json.append("    \"").append(entry.getKey()).append("\": \"").append(entry.getValue()).append('"');
+            json.append(++i < ranges.size() ? ",\n" : "\n");
+        }
+        json.append("  }");
+        if (sharedLibrary) json.append(",\n  \"sharedLibrary\": \"META-INF/forgix/multiversion/shared.multiversion.jar\"");
+        return json.append("\n}\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A jar of class-like entries. The content is half random and half repeated, so it compresses roughly like
+     * bytecode does. The same arguments always give the same bytes, entries don't carry the time they were written.
+     */
+    static byte[] jar(String prefix, int entryCount, int entrySize, long seed) throws IOException {
+        var random = new Random(seed);
+        var bytes = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bytes)) {
+            zos.putNextEntry(entry("META-INF/MANIFEST.MF"));
+            zos.write("Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(entry("fabric.mod.json"));
+            zos.write("{}".getBytes(StandardCharsets.UTF_8));
+            var content = new byte[entrySize];
+            for (int i = 0; i < entryCount; i++) {
+                for (int j = 0; j < entrySize; j++) content[j] = j % 2 == 0 ? (byte) random.nextInt(256) : (byte) (j & 0x0F);
+                zos.putNextEntry(entry(prefix + "/pkg" + (i % 32) + "/Class" + i + ".class"));
+                zos.write(content);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // A fixed time, or identical shared libraries written a second apart would differ
+    private static ZipEntry entry(String name) {
+        var entry = new ZipEntry(name);
+        entry.setTime(FIXED_TIME);
+        return entry;
+    }
+}
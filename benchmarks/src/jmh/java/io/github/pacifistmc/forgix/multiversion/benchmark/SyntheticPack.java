@@ -0,0 +1,103 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.versioning.BinaryVersionIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A directory of synthetic mod jars, laid out the way the Forgix build packages them: a multiversion.json with its
+ * precompiled index, a nested jar per version range and an optional shared library.
+ *
+ * @param rangeCount               Version ranges (and version jars) per Forgix mod
+ * @param entryCount               Entries per version jar
+ * @param entrySize                Size of every entry in bytes
+ * @param sharedEntryCount         Entries in the shared library, 0 for no shared library
+ * @param forgixEveryNth           Every nth mod is packaged with Forgix, the others are plain jars of the same size
+ * @param compressedNestedJars     Whether the nested jars are deflated instead of stored like the build does
+ * @param identicalSharedLibraries Whether every mod ships the same shared library, like sibling mods of one author
+ */
+record SyntheticPack(int rangeCount, int entryCount, int entrySize, int sharedEntryCount, int forgixEveryNth,
+                     boolean compressedNestedJars, boolean identicalSharedLibraries) {
+    static final String SHARED_LIBRARY = "META-INF/forgix/multiversion/shared.multiversion.jar";
+
+    /**
+     * The Minecraft version the pack is loaded on, which matches a range in the middle of every manifest.
+     */
+    String minecraftVersion() {
+        return SyntheticJars.version(rangeCount / 2);
+    }
+
+    /**
+     * Writes the first mods of the pack into a directory. Mod i is the same no matter how many mods are written, so
+     * smaller packs are a prefix of larger ones.
+     *
+     * @param directory                Where to write the mod jars
+     * @param modCount                 How many mods to write
+     * @return The mod jars, in order
+     */
+    List<Path> write(Path directory, int modCount) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> mods = new ArrayList<>(modCount);
+        for (int i = 0; i < modCount; i++) {
+            var jar = directory.resolve("mod-" + i + ".jar");
+            if (!Files.exists(jar)) Files.write(jar, i % forgixEveryNth == 0 ? forgixMod(i) : plainMod(i));
+            mods.add(jar);
+        }
+        return mods;
+    }
+
+    private byte[] forgixMod(int mod) throws IOException {
+        var manifest = SyntheticJars.manifest(rangeCount, sharedEntryCount > 0);
+        var forgix = Forgix.getForgixVersionJson(new ByteArrayInputStream(manifest));
+        var index = new ByteArrayOutputStream();
+        BinaryVersionIndex.write(forgix, manifest.length, BinaryVersionIndex.checksum(new ByteArrayInputStream(manifest)), List.of(minecraftVersion()), index);
+
+        var bytes = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bytes)) {
+            putEntry(zos, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8), false);
+            putEntry(zos, Forgix.MULTI_VERSION_LOCATION, manifest, false);
+            putEntry(zos, BinaryVersionIndex.LOCATION, index.toByteArray(), false);
+            int range = 0;
+            for (var path : SyntheticJars.ranges(rangeCount).values()) {
+                putEntry(zos, path, SyntheticJars.jar("mod" + mod + "/v" + range, entryCount, entrySize, mod * 1000L + range++), !compressedNestedJars);
+            }
+            if (sharedEntryCount > 0) {
+                var sharedLibrary = identicalSharedLibraries ? SyntheticJars.jar("shared", sharedEntryCount, entrySize, 999)
+                        : SyntheticJars.jar("mod" + mod + "/shared", sharedEntryCount, entrySize, mod * 1000L + 999);
+                putEntry(zos, SHARED_LIBRARY, sharedLibrary, !compressedNestedJars);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    // About as large as a Forgix mod, so the share of Forgix mods doesn't change how much the pack weighs
+    private byte[] plainMod(int mod) throws IOException {
+        return SyntheticJars.jar("plain" + mod, entryCount * rangeCount + sharedEntryCount, entrySize, mod);
+    }
+
+    private static void putEntry(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        var entry = new ZipEntry(name);
+        if (stored) {
+            var crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+}
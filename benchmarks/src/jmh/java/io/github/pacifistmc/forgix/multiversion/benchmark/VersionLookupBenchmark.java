@@ -0,0 +1,45 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.versioning.ForgixVersionJson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting the version jar from manifests with few to many ranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionLookupBenchmark {
+    @Param({ "1", "10", "100", "500" })
+    public int rangeCount;
+
+    private ForgixVersionJson manifest;
+    private String version;
+
+    @Setup
+    public void setup() {
+        manifest = newManifest();
+        version = SyntheticJars.version(rangeCount / 2);
+        manifest.getPathForVersion(version); // Compile the index outside of the measurement
+    }
+
+    private ForgixVersionJson newManifest() {
+        var manifest = new ForgixVersionJson();
+        manifest.getVersions().putAll(SyntheticJars.ranges(rangeCount));
+        return manifest;
+    }
+
+    // A lookup on a manifest whose index is already compiled
+    @Benchmark
+    public String getPathForVersion() {
+        return manifest.getPathForVersion(version);
+    }
+
+    // What a locator actually pays per jar: the index is compiled for the first lookup
+    @Benchmark
+    public String getPathForVersionCold() {
+        return newManifest().getPathForVersion(version);
+    }
+}
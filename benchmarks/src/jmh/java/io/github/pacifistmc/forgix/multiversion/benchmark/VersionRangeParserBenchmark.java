@@ -0,0 +1,30 @@
+package io.github.pacifistmc.forgix.multiversion.benchmark;
+
+import io.github.pacifistmc.forgix.multiversion.versioning.VersionRangeParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-range primitives the manifest lookup is built from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VersionRangeParserBenchmark {
+    @Param({ "1.20.1", "[1.16.2,)", "[1.18,1.20.4)", "(,1.12.2],[1.16.5,)" })
+    public String range;
+
+    @Param({ "1.16.5", "1.21" })
+    public String version;
+
+    @Benchmark
+    public boolean containsVersion() {
+        return VersionRangeParser.containsVersion(range, version);
+    }
+
+    @Benchmark
+    public Object getLowerBound() {
+        return VersionRangeParser.getLowerBound(range);
+    }
+}
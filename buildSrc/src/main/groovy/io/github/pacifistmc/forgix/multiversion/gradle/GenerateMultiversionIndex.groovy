@@ -0,0 +1,46 @@
+package io.github.pacifistmc.forgix.multiversion.gradle
+
+import groovy.json.JsonSlurper
+import io.github.pacifistmc.forgix.multiversion.versioning.BinaryVersionIndex
+import io.github.pacifistmc.forgix.multiversion.versioning.ForgixVersionJson
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.tasks.*
+
+/**
+ * Precompiles a multiversion.json into the binary index the locators read at runtime, see {@link BinaryVersionIndex}.
+ */
+@CacheableTask
+abstract class GenerateMultiversionIndex extends DefaultTask {
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getManifest()
+
+    // Minecraft versions that get a direct entry in the lookup table
+    @Input
+    abstract ListProperty<String> getKnownMinecraftVersions()
+
+    @OutputDirectory
+    abstract DirectoryProperty getOutputDirectory()
+
+    @TaskAction
+    void generate() {
+        def manifestFile = manifest.get().asFile
+        def json = new JsonSlurper().parse(manifestFile, 'UTF-8') as Map
+
+        def forgix = new ForgixVersionJson()
+        (json.versions as Map)?.each { range, path -> forgix.versions.put(range as String, path as String) }
+        forgix.sharedLibrary = json.sharedLibrary as String
+        long checksum = manifestFile.withInputStream { BinaryVersionIndex.checksum(it) }
+
+        def outputDir = outputDirectory.get().asFile
+        outputDir.deleteDir()
+        def indexFile = new File(outputDir, BinaryVersionIndex.LOCATION)
+        indexFile.parentFile.mkdirs()
+        indexFile.withOutputStream {
+            BinaryVersionIndex.write(forgix, manifestFile.length(), checksum, knownMinecraftVersions.get(), it)
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.pacifistmc.forgix.multiversion.gradle
+
+import groovy.json.JsonOutput
+import io.github.pacifistmc.forgix.multiversion.versioning.VersionRangeIndex
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.*
+
+/**
+ * Generates the multiversion.json from the version ranges declared in {@link MultiversionExtension}.
+ */
+@CacheableTask
+abstract class GenerateMultiversionManifest extends DefaultTask {
+    static final String LOCATION = 'META-INF/forgix/multiversion.json'
+
+    // Version ranges mapped to the path of their jar inside the multiversion jar
+    @Input
+    abstract MapProperty<String, String> getVersions()
+
+    @Input
+    @Optional
+    abstract Property<String> getSharedLibrary()
+
+    @OutputDirectory
+    abstract DirectoryProperty getOutputDirectory()
+
+    @Internal
+    Provider<RegularFile> getManifestFile() {
+        return outputDirectory.file(LOCATION)
+    }
+
+    @TaskAction
+    void generate() {
+        Map<String, String> versions = new LinkedHashMap<>(this.versions.get())
+        // Fail the build rather than ship ranges the locators would skip
+        def malformed = VersionRangeIndex.compile(versions).malformedRanges
+        if (!malformed.isEmpty()) {
+            throw new GradleException('Malformed multiversion ranges: ' + malformed.collect { range, reason -> "'$range' ($reason)" }.join(', '))
+        }
+
+        Map<String, Object> json = [versions: versions]
+        if (sharedLibrary.present) json.sharedLibrary = sharedLibrary.get()
+
+        def outputDir = outputDirectory.get().asFile
+        outputDir.deleteDir()
+        def manifest = manifestFile.get().asFile
+        manifest.parentFile.mkdirs()
+        manifest.setText(JsonOutput.prettyPrint(JsonOutput.toJson(json)), 'UTF-8')
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.pacifistmc.forgix.multiversion.gradle
+
+import org.gradle.api.Named
+import org.gradle.api.NamedDomainObjectContainer
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.model.ObjectFactory
+import org.gradle.api.provider.Property
+
+import javax.inject.Inject
+
+/**
+ * Declares the version jars and shared library a multiversion jar is packaged from, instead of a handwritten
+ * multiversion.json.
+ * <pre>
+ * forgixMultiversion {
+ *     versions {
+ *         legacy {
+ *             range = '[1.16.2,1.17)'
+ *             jar.from(project(':forge_1_16').tasks.named('jar'))
+ *         }
+ *     }
+ *     sharedLibrary.from(project(':shared').tasks.named('jar'))
+ * }
+ * </pre>
+ * Every version jar is normalized by its own cacheable task, so changing one version only repackages that jar.
+ */
+abstract class MultiversionExtension {
+    private final NamedDomainObjectContainer<NestedVersion> versions
+
+    @Inject
+    MultiversionExtension(ObjectFactory objects) {
+        versions = objects.domainObjectContainer(NestedVersion)
+    }
+
+    NamedDomainObjectContainer<NestedVersion> getVersions() {
+        return versions
+    }
+
+    void versions(Closure<?> configure) {
+        versions.configure(configure)
+    }
+
+    // The shared library, loaded alongside whichever version jar is selected; empty if there is none
+    abstract ConfigurableFileCollection getSharedLibrary()
+
+    abstract static class NestedVersion implements Named {
+        private final String name
+
+        @Inject
+        NestedVersion(String name) {
+            this.name = name
+        }
+
+        @Override
+        String getName() {
+            return name
+        }
+
+        // The Minecraft versions the jar is for, as a version range (e.g. [1.20,1.20.5)) or a single version
+        abstract Property<String> getRange()
+
+        // The jar itself, usually the jar task of the project that builds it
+        abstract ConfigurableFileCollection getJar()
+    }
+}
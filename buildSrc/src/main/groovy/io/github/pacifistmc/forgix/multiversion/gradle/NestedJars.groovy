@@ -0,0 +1,205 @@
+package io.github.pacifistmc.forgix.multiversion.gradle
+
+import groovy.json.JsonSlurper
+
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+/**
+ * Helpers for the jars nested in a multiversion jar.
+ */
+class NestedJars {
+    // Same constant Gradle uses for reproducible archives
+    private static final long CONSTANT_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).timeInMillis
+
+    /**
+     * Gets the paths of every nested jar a multiversion.json points to.
+     *
+     * @param manifest The multiversion.json
+     * @return The version jars and the shared library, if any
+     */
+    static Set<String> pathsIn(File manifest) {
+        def json = new JsonSlurper().parse(manifest, 'UTF-8') as Map
+        Set<String> paths = new LinkedHashSet<>()
+        (json.versions as Map)?.values()?.each { paths.add(it as String) }
+        if (json.sharedLibrary != null) paths.add(json.sharedLibrary as String)
+        return paths
+    }
+
+    /**
+     * Writes a reproducible copy of a jar to nest: entries sorted by name (the manifest first, where JarInputStream
+     * looks for it), duplicates dropped, and timestamps, comments and extra fields cleared. Rebuilding a version jar
+     * with the same contents then produces the same bytes, so nothing downstream of it is repackaged.
+     *
+     * @param jar    The jar to normalize
+     * @param output Where to write the normalized jar
+     */
+    static void normalize(File jar, File output) {
+        output.parentFile.mkdirs()
+        new ZipFile(jar).withCloseable { zip ->
+            Map<String, ZipEntry> entries = new TreeMap<>()
+            for (def entry : zip.entries()) entries.putIfAbsent(entry.name, entry)
+            List<String> names = ['META-INF/', 'META-INF/MANIFEST.MF'].findAll { entries.containsKey(it) }
+            names.addAll(entries.keySet().findAll { !names.contains(it) })
+
+            new ZipOutputStream(output.newOutputStream()).withCloseable { out ->
+                for (def name : names) {
+                    def copy = new ZipEntry(name)
+                    copy.time = CONSTANT_TIME
+                    out.putNextEntry(copy)
+                    if (!entries[name].directory) zip.getInputStream(entries[name]).withCloseable { it.transferTo(out) }
+                    out.closeEntry()
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the entries that are byte-identical in every version jar into the shared library, so they're only packaged,
+     * extracted and mounted once. The version jar wins over the shared library at runtime, so an entry every version
+     * jar agrees on loads the same from the shared library, no matter the Minecraft version.
+     * <p>
+     * Metadata under META-INF and the fabric.mod.json (which the shared library never contributes) stay in the version
+     * jars. Nothing is moved without a shared library to move it to, with fewer than two version jars, or when one of
+     * the nested jars is signed.
+     *
+     * @param jar      The jar to rewrite in place
+     * @param manifest The multiversion.json of the jar
+     * @return The number of entries moved to the shared library
+     */
+    static int hoistCommonEntries(File jar, File manifest) {
+        def json = new JsonSlurper().parse(manifest, 'UTF-8') as Map
+        String sharedPath = json.sharedLibrary as String
+        List<String> versionPaths = ((json.versions as Map)?.values()?.collect { it as String } ?: []).unique()
+        if (sharedPath == null || versionPaths.size() < 2) return 0
+
+        Map<String, byte[]> nested = [:]
+        new ZipFile(jar).withCloseable { zip ->
+            for (def path : versionPaths + sharedPath) {
+                def entry = zip.getEntry(path)
+                if (entry != null) nested[path] = zip.getInputStream(entry).withCloseable { it.readAllBytes() }
+            }
+        }
+        if (!nested.keySet().containsAll(versionPaths + sharedPath)) return 0
+
+        Map<String, Map<String, byte[]>> contents = nested.collectEntries { path, bytes -> [path, readEntries(bytes)] }
+        if (contents.values().any { entries -> entries.keySet().any { isSignature(it) } }) return 0
+
+        // Entries of the first version jar whose digest matches in every other version jar
+        def versionContents = versionPaths.collect { contents[it] }
+        Set<String> common = new LinkedHashSet<>()
+        versionContents.first().each { name, bytes ->
+            if (name.startsWith('META-INF/') || name == 'fabric.mod.json') return
+            def digest = sha256(bytes)
+            if (versionContents.drop(1).every { it.containsKey(name) && MessageDigest.isEqual(sha256(it[name]), digest) }) common.add(name)
+        }
+        if (common.isEmpty()) return 0
+
+        Map<String, byte[]> rewritten = [:]
+        for (def path : versionPaths) {
+            rewritten[path] = writeEntries(contents[path].findAll { name, bytes -> !common.contains(name) })
+        }
+        def shared = new LinkedHashMap<String, byte[]>(contents[sharedPath])
+        common.each { shared[it] = versionContents.first()[it] }
+        rewritten[sharedPath] = writeEntries(shared)
+
+        replaceEntries(jar, rewritten)
+        return common.size()
+    }
+
+    private static boolean isSignature(String name) {
+        return name.startsWith('META-INF/') && (name.endsWith('.SF') || name.endsWith('.RSA') || name.endsWith('.DSA') || name.endsWith('.EC'))
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        return MessageDigest.getInstance('SHA-256').digest(bytes)
+    }
+
+    // Files only, in order; directories are implied by the entries inside them
+    private static Map<String, byte[]> readEntries(byte[] jar) {
+        Map<String, byte[]> entries = new LinkedHashMap<>()
+        new ZipInputStream(new ByteArrayInputStream(jar)).withCloseable { zis ->
+            def entry
+            while ((entry = zis.nextEntry) != null) {
+                if (!entry.directory) entries.putIfAbsent(entry.name, zis.readAllBytes())
+            }
+        }
+        return entries
+    }
+
+    private static byte[] writeEntries(Map<String, byte[]> entries) {
+        def bytes = new ByteArrayOutputStream()
+        new ZipOutputStream(bytes).withCloseable { out ->
+            entries.each { name, data ->
+                def entry = new ZipEntry(name)
+                entry.time = CONSTANT_TIME
+                out.putNextEntry(entry)
+                out.write(data)
+                out.closeEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    private static void replaceEntries(File jar, Map<String, byte[]> replacements) {
+        def temp = new File(jar.absoluteFile.parentFile, jar.name + '.tmp')
+        new ZipFile(jar).withCloseable { zip ->
+            new ZipOutputStream(temp.newOutputStream()).withCloseable { out ->
+                for (def entry : zip.entries()) {
+                    def copy = new ZipEntry(entry.name)
+                    copy.time = entry.time
+                    out.putNextEntry(copy)
+                    if (replacements.containsKey(entry.name)) out.write(replacements[entry.name])
+                    else zip.getInputStream(entry).withCloseable { it.transferTo(out) }
+                    out.closeEntry()
+                }
+            }
+        }
+        Files.move(temp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    /**
+     * Rewrites the jar so the given nested jars are stored uncompressed, which lets the locators memory-map them in
+     * place instead of inflating them. Everything else keeps its order and is deflated like before.
+     * Jars are already compressed, so storing them barely grows the outer jar.
+     *
+     * @param jar         The jar to rewrite in place
+     * @param nestedPaths The paths of the nested jars
+     */
+    static void store(File jar, Set<String> nestedPaths) {
+        def temp = new File(jar.absoluteFile.parentFile, jar.name + '.tmp')
+        new ZipFile(jar).withCloseable { zip ->
+            if (!zip.entries().toList().any { nestedPaths.contains(it.name) && it.method != ZipEntry.STORED }) return
+
+            new ZipOutputStream(temp.newOutputStream()).withCloseable { out ->
+                for (def entry : zip.entries()) {
+                    def copy = new ZipEntry(entry.name)
+                    copy.time = entry.time
+                    if (entry.comment != null) copy.comment = entry.comment
+                    if (nestedPaths.contains(entry.name)) {
+                        byte[] bytes = zip.getInputStream(entry).readAllBytes()
+                        def crc = new CRC32()
+                        crc.update(bytes)
+                        copy.method = ZipEntry.STORED
+                        copy.size = bytes.length
+                        copy.compressedSize = bytes.length
+                        copy.crc = crc.value
+                        out.putNextEntry(copy)
+                        out.write(bytes)
+                    } else {
+                        out.putNextEntry(copy)
+                        zip.getInputStream(entry).withCloseable { it.transferTo(out) }
+                    }
+                    out.closeEntry()
+                }
+            }
+        }
+        if (temp.exists()) Files.move(temp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.pacifistmc.forgix.multiversion.gradle
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.*
+import org.gradle.workers.WorkAction
+import org.gradle.workers.WorkParameters
+import org.gradle.workers.WorkerExecutor
+
+import javax.inject.Inject
+
+/**
+ * Normalizes a jar before it's nested in a multiversion jar, see {@link NestedJars#normalize(File, File)}.
+ * <p>
+ * There's one of these per nested jar, so each one is up to date and cached on its own. The work runs in the worker
+ * API, which lets Gradle normalize the other nested jars (and run the rest of the build) at the same time.
+ */
+@CacheableTask
+abstract class NormalizeNestedJar extends DefaultTask {
+    @InputFiles
+    @SkipWhenEmpty
+    @PathSensitive(PathSensitivity.NONE)
+    abstract ConfigurableFileCollection getJar()
+
+    @OutputFile
+    abstract RegularFileProperty getOutputJar()
+
+    @Inject
+    abstract WorkerExecutor getWorkerExecutor()
+
+    @TaskAction
+    void normalize() {
+        def output = outputJar.get().asFile
+        def input = jar.singleFile
+        workerExecutor.noIsolation().submit(Normalize) {
+            it.inputJar.set(input)
+            it.outputJar.set(output)
+        }
+    }
+
+    static interface Parameters extends WorkParameters {
+        RegularFileProperty getInputJar()
+
+        RegularFileProperty getOutputJar()
+    }
+
+    abstract static class Normalize implements WorkAction<Parameters> {
+        @Override
+        void execute() {
+            NestedJars.normalize(parameters.inputJar.get().asFile, parameters.outputJar.get().asFile)
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package io.github.pacifistmc.forgix.multiversion;
 
-import com.google.gson.Gson;
+import io.github.pacifistmc.forgix.multiversion.discovery.ManifestLoader;
+import io.github.pacifistmc.forgix.multiversion.fs.SharedLibraries;
+import io.github.pacifistmc.forgix.multiversion.fs.StoredNestedJars;
+import io.github.pacifistmc.forgix.multiversion.fs.ZipIndexFileSystem;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
 import io.github.pacifistmc.forgix.multiversion.versioning.ForgixVersionJson;
+import io.github.pacifistmc.forgix.multiversion.versioning.VersionSelection;
+import io.github.pacifistmc.forgix.multiversion.zip.RawZipWriter;
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.*;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
-import java.util.Optional;
 import java.util.function.Predicate;
 
 public class Forgix {
@@ -23,18 +33,99 @@ public class Forgix {
      * @return The ForgixVersionJson, or null if it could not be parsed
      */
     public static ForgixVersionJson getForgixVersionJson(InputStream inputStream) {
-        if (inputStream == null) return null;
-        try {
-            return new Gson().fromJson(
-                    new String(inputStream.readAllBytes()),
-                    ForgixVersionJson.class
-            );
-        } catch (IOException e) {
+        return ManifestLoader.parse(inputStream);
+    }
+
+    /**
+     * Opens a resource of a mod jar.
+     */
+    @FunctionalInterface
+    public interface ResourceOpener {
+        /**
+         * @param path The path of the resource inside the jar
+         * @return The input stream of the resource, or null if the jar doesn't contain it
+         */
+        InputStream open(String path) throws IOException;
+
+        /**
+         * Gets what the jar records for a resource in its central directory, which takes no reading of the resource.
+         *
+         * @param path The path of the resource inside the jar
+         * @return The recorded size and CRC-32, or null if the jar doesn't contain the resource or isn't a zip
+         */
+        default RecordedEntry recorded(String path) throws IOException {
             return null;
         }
     }
 
+    /**
+     * The size and CRC-32 of a resource, as recorded by the central directory of its jar.
+     */
+    public record RecordedEntry(long size, long crc) { }
+
+    /**
+     * Selects the nested jars to load for the given Minecraft version, see {@link ManifestLoader}.
+     *
+     * @param jar              The mod jar, used to remember the selection; null if it's not known
+     * @param resources        Opens resources of the mod jar
+     * @param minecraftVersion The running Minecraft version
+     * @return The selection, or null if the jar has no manifest or no version range matches
+     */
+    public static VersionSelection selectVersion(Path jar, ResourceOpener resources, String minecraftVersion) throws IOException {
+        return ManifestLoader.select(jar, resources, minecraftVersion, StartupTimings.NONE);
+    }
+
+    /**
+     * Selects the nested jars to load for the given Minecraft version, recording the manifest and resolve phases.
+     * See {@link #selectVersion(Path, ResourceOpener, String)}.
+     */
+    public static VersionSelection selectVersion(Path jar, ResourceOpener resources, String minecraftVersion, StartupTimings timings) throws IOException {
+        return ManifestLoader.select(jar, resources, minecraftVersion, timings);
+    }
+
+    /**
+     * How {@link #extractNestedJar(String, String, Path, MergeMode)} writes the entries of the nested jars.
+     */
+    public enum MergeMode {
+        /**
+         * Copies every entry exactly as it's compressed in the nested jar, along with its CRC and sizes.
+         * Falls back to {@link #RECOMPRESS} for nested jars the raw copy can't handle (e.g. ZIP64).
+         */
+        RAW_COPY,
+        /**
+         * Inflates every entry and deflates it again into the output jar.
+         */
+        RECOMPRESS
+    }
+
+    /**
+     * Merges the version jar and the shared library nested in this jar into a single jar, copying compressed entries
+     * as-is. See {@link #extractNestedJar(String, String, Path, MergeMode)}.
+     */
     public static void extractNestedJar(String versionPathInJar, String sharedLibraryPathInJar, Path outputJarPath) {
+        extractNestedJar(versionPathInJar, sharedLibraryPathInJar, outputJarPath, MergeMode.RAW_COPY);
+    }
+
+    /**
+     * Merges the version jar and the shared library nested in this jar into a single jar.
+     * See {@link #extractNestedJar(ResourceOpener, String, String, Path, MergeMode)}.
+     */
+    public static void extractNestedJar(String versionPathInJar, String sharedLibraryPathInJar, Path outputJarPath, MergeMode mergeMode) {
+        extractNestedJar(path -> Forgix.class.getResourceAsStream("/" + path), versionPathInJar, sharedLibraryPathInJar, outputJarPath, mergeMode);
+    }
+
+    /**
+     * Merges the version jar and the shared library nested in a mod jar into a single jar.
+     * Directories and the shared library's fabric.mod.json are left out. When both jars contain an entry, the one from
+     * the version jar is kept; duplicates within one jar keep their first occurrence.
+     *
+     * @param resources              Opens resources of the mod jar
+     * @param versionPathInJar       The path of the version jar inside the mod jar
+     * @param sharedLibraryPathInJar The path of the shared library inside the mod jar, or null if there is none
+     * @param outputJarPath          The path to write the merged jar to
+     * @param mergeMode              How the entries are written
+     */
+    public static void extractNestedJar(ResourceOpener resources, String versionPathInJar, String sharedLibraryPathInJar, Path outputJarPath, MergeMode mergeMode) {
         if (outputJarPath == null) throw new IllegalArgumentException("Output path cannot be null");
 
         // Ensure parent directory exists
@@ -45,46 +136,117 @@ public class Forgix {
                 throw new RuntimeException("Failed to create parent directories", e);
             }
         });
-        
-        try (var zos = new ZipOutputStream(Files.newOutputStream(outputJarPath))) {
-            // Process version-specific jar
-            processNestedJar(versionPathInJar, zos, name -> true);
-            
-            // Process shared library jar if it exists
+
+        try {
+            List<NestedJar> nestedJars = new ArrayList<>();
+            nestedJars.add(new NestedJar(readNestedJar(resources, versionPathInJar), name -> true));
             if (sharedLibraryPathInJar != null) {
-                processNestedJar(sharedLibraryPathInJar, zos, name -> !name.equals("fabric.mod.json"));
+                nestedJars.add(new NestedJar(readNestedJar(resources, sharedLibraryPathInJar), name -> !name.equals("fabric.mod.json")));
+            }
+
+            if (mergeMode == MergeMode.RAW_COPY && rawCopyNestedJars(nestedJars, outputJarPath)) return;
+
+            try (var zos = new ZipOutputStream(Files.newOutputStream(outputJarPath))) {
+                Set<String> written = new HashSet<>();
+                for (var nestedJar : nestedJars) {
+                    processNestedJar(nestedJar, zos, written);
+                }
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to extract jar: " + versionPathInJar + " to " + outputJarPath, e);
         }
     }
 
-    private static void processNestedJar(String jarPath, ZipOutputStream zos, Predicate<String> entryFilter) throws IOException {
-        try (var jarStream = Forgix.class.getResourceAsStream("/" + jarPath)) {
+    /**
+     * Mounts the version jar and the shared library nested in a mod jar as one read-only file system, with the same
+     * contents {@link #extractNestedJar(ResourceOpener, String, String, Path, MergeMode)} would write to disk.
+     * Nested jars stored uncompressed in the mod jar are read in place, compressed ones are inflated into memory once.
+     * A shared library identical to one mounted for another mod reuses its index, see {@link SharedLibraries}.
+     *
+     * @param resources              Opens resources of the mod jar
+     * @param modJar                 The index of the mod jar to read stored nested jars from, or null to always use resources
+     * @param versionPathInJar       The path of the version jar inside the mod jar
+     * @param sharedLibraryPathInJar The path of the shared library inside the mod jar, or null if there is none
+     * @return The file system
+     * @throws ZipException If one of the nested jars can't be indexed (e.g. ZIP64), it can still be extracted
+     */
+    public static ZipIndexFileSystem mountNestedJars(ResourceOpener resources, ZipIndex modJar, String versionPathInJar, String sharedLibraryPathInJar) throws IOException {
+        List<ZipIndexFileSystem.Layer> layers = new ArrayList<>();
+        layers.add(new ZipIndexFileSystem.Layer(indexNestedJar(resources, modJar, versionPathInJar), name -> true));
+        if (sharedLibraryPathInJar != null) {
+            layers.add(new ZipIndexFileSystem.Layer(indexSharedLibrary(resources, modJar, sharedLibraryPathInJar), name -> !name.equals("fabric.mod.json")));
+        }
+        return ZipIndexFileSystem.of(versionPathInJar, layers);
+    }
+
+    private static ZipIndex indexNestedJar(ResourceOpener resources, ZipIndex modJar, String jarPath) throws IOException {
+        var stored = StoredNestedJars.findStored(modJar, jarPath);
+        if (stored != null) return ZipIndex.read(modJar.getRawData(stored));
+        return ZipIndex.read(ByteBuffer.wrap(readNestedJar(resources, jarPath)));
+    }
+
+    // Identical shared libraries of different mods are only indexed (and for compressed ones, held in memory) once
+    private static ZipIndex indexSharedLibrary(ResourceOpener resources, ZipIndex modJar, String jarPath) throws IOException {
+        var stored = StoredNestedJars.findStored(modJar, jarPath);
+        if (stored == null) return SharedLibraries.index(modJar, jarPath, readNestedJar(resources, jarPath));
+        return SharedLibraries.index(modJar, jarPath, () -> ZipIndex.read(modJar.getRawData(stored)));
+    }
+
+    private record NestedJar(byte[] bytes, Predicate<String> entryFilter) { }
+
+    private static byte[] readNestedJar(ResourceOpener resources, String jarPath) throws IOException {
+        try (var jarStream = resources.open(jarPath)) {
             if (jarStream == null) throw new RuntimeException("Could not find " + jarPath + " in jar");
-            
-            var zis = new ZipInputStream(jarStream);
-            ZipEntry entry;
-            
-            while ((entry = zis.getNextEntry()) != null) {
-                // Skip directories
-                if (entry.isDirectory()) {
-                    zis.closeEntry();
-                    continue;
-                }
-                
-                var name = entry.getName();
-                // Skip entries that don't pass the filter
-                if (!entryFilter.test(name)) {
-                    zis.closeEntry();
-                    continue;
+            return jarStream.readAllBytes();
+        }
+    }
+
+    // Returns false without writing anything if one of the jars can't be copied raw
+    private static boolean rawCopyNestedJars(List<NestedJar> nestedJars, Path outputJarPath) throws IOException {
+        List<ZipIndex> indexes = new ArrayList<>();
+        try {
+            for (var nestedJar : nestedJars) {
+                indexes.add(ZipIndex.read(ByteBuffer.wrap(nestedJar.bytes())));
+            }
+        } catch (ZipException e) {
+            return false;
+        }
+
+        try (var writer = new RawZipWriter(Files.newOutputStream(outputJarPath))) {
+            for (int i = 0; i < nestedJars.size(); i++) {
+                var index = indexes.get(i);
+                for (var entry : index.entries()) {
+                    // Skip directories and entries that don't pass the filter
+                    if (entry.isDirectory() || !nestedJars.get(i).entryFilter().test(entry.name())) continue;
+                    writer.copy(index, entry);
                 }
-                
-                zos.putNextEntry(new ZipEntry(name));
-                zis.transferTo(zos);
-                zos.closeEntry();
+            }
+        }
+        return true;
+    }
+
+    private static void processNestedJar(NestedJar nestedJar, ZipOutputStream zos, Set<String> written) throws IOException {
+        var zis = new ZipInputStream(new ByteArrayInputStream(nestedJar.bytes()));
+        ZipEntry entry;
+
+        while ((entry = zis.getNextEntry()) != null) {
+            // Skip directories
+            if (entry.isDirectory()) {
                 zis.closeEntry();
+                continue;
             }
+
+            var name = entry.getName();
+            // Skip entries that don't pass the filter, or that were already written by a previous jar
+            if (!nestedJar.entryFilter().test(name) || !written.add(name)) {
+                zis.closeEntry();
+                continue;
+            }
+
+            zos.putNextEntry(new ZipEntry(name));
+            zis.transferTo(zos);
+            zos.closeEntry();
+            zis.closeEntry();
         }
     }
 }
@@ -0,0 +1,66 @@
+package io.github.pacifistmc.forgix.multiversion.cache;
+
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Nested jars unpacked into an {@link ExtractionCache} as plain directories, so the loader reads their classes straight
+ * from disk instead of through two layers of zip decoding.
+ * <p>
+ * Off by default, enable it with {@code -Dforgix.multiversion.explodeNestedJars=true}. A nested jar is unpacked on the
+ * first boot it's loaded on; later boots, and other mods nesting the same jar, reuse the directory. Later boots find it
+ * through the location key of the nested jar, so they don't hash it again unless its mod jar changed.
+ */
+public final class ExplodedJars {
+    public static final boolean ENABLED = Boolean.getBoolean("forgix.multiversion.explodeNestedJars");
+
+    private ExplodedJars() { }
+
+    /**
+     * Gets the exploded directory of a nested jar, unpacking it into the cache if it isn't cached yet.
+     *
+     * @param cache      The cache to unpack into
+     * @param modJarPath The mod jar
+     * @param modJar     The index of the mod jar to hash the nested jar from, may be null in which case it's read through the loader
+     * @param path       The path of the nested jar inside the mod jar
+     * @param nestedJar  The nested jar, as the loader sees it inside the mod jar
+     * @return The exploded directory
+     */
+    public static Path explode(ExtractionCache cache, Path modJarPath, ZipIndex modJar, String path, Path nestedJar) throws IOException {
+        var key = cache.contentKey(ExtractionCache.locationKey(modJarPath, modJar, path), () -> ExtractionCache.key(modJar, path, nestedJar));
+        return cache.getOrCreateDirectory(key, directory -> unpack(nestedJar, directory));
+    }
+
+    // Duplicate entries keep their first occurrence, like the merged jars do
+    private static void unpack(Path nestedJar, Path directory) {
+        var root = directory.toAbsolutePath().normalize();
+        try (var zis = new ZipInputStream(Files.newInputStream(nestedJar))) {
+            Files.createDirectories(root);
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                var target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root) || target.equals(root)) {
+                    if (entry.isDirectory()) continue;
+                    throw new ZipException("Entry " + entry.getName() + " of " + nestedJar + " is outside of the jar");
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(zis, target);
+                }
+                zis.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to unpack " + nestedJar + " to " + directory, e);
+        }
+    }
+}
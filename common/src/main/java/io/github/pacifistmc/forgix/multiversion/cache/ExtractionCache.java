@@ -0,0 +1,329 @@
+package io.github.pacifistmc.forgix.multiversion.cache;
+
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Persistent, content-addressed cache of extracted jars, exploded jar directories and small records computed from jars.
+ * <p>
+ * Every cached file is named after a digest of everything that went into producing it, so a file that exists is
+ * always up-to-date and can be reused as-is. Files are produced under a unique temporary name and atomically moved
+ * into place, which keeps the cache consistent even when several game instances share one mods directory.
+ * <p>
+ * Hashing a nested jar means reading all of it, so the content key of a nested jar is also remembered under a cheap
+ * location key (where the nested jar is, and the size and modification time of its mod jar), and only computed again
+ * once the mod jar changes, see {@link #contentKey(String, KeySource)}.
+ * <p>
+ * The cache is capped in size; the least recently used files are evicted on a background thread.
+ */
+public class ExtractionCache {
+    public static final long DEFAULT_MAX_SIZE = Long.getLong("forgix.multiversion.cacheSizeMb", 512) * 1024 * 1024;
+    private static final String CACHE_FORMAT = "forgix-extraction-cache-v1"; // Bump to invalidate every cached file
+    private static final String EXTENSION = ".jar";
+    private static final String DIRECTORY_EXTENSION = ".exploded";
+    private static final String RECORD_EXTENSION = ".record";
+    private static final String ALIAS_EXTENSION = ".key";
+    private static final String TEMP_EXTENSION = ".tmp";
+    // Files touched this recently may be in use by another instance sharing the cache, so they're never evicted
+    private static final long IN_USE_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSize;
+
+    public ExtractionCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the cached file for the given key, producing it first if it isn't cached yet.
+     *
+     * @param key      The content key of the file, see {@link #key(Path, String...)}
+     * @param producer Writes the file to the path it's given
+     * @return The path of the cached file
+     */
+    public Path getOrCreate(String key, Consumer<Path> producer) {
+        return getOrCreate(directory.resolve(key + EXTENSION), key, producer);
+    }
+
+    /**
+     * Gets the cached directory for the given key, producing it first if it isn't cached yet. The directory is
+     * produced in full under a temporary name, so a cached directory is never partially written.
+     *
+     * @param key      The content key of the directory, see {@link #key(List, String...)}
+     * @param producer Writes the directory to the path it's given
+     * @return The path of the cached directory
+     */
+    public Path getOrCreateDirectory(String key, Consumer<Path> producer) {
+        return getOrCreate(directory.resolve(key + DIRECTORY_EXTENSION), key, producer);
+    }
+
+    /**
+     * Gets the cached record for the given key, e.g. the result of checking a jar, producing it first if it isn't cached
+     * yet. Same as {@link #getOrCreate(String, Consumer)}, records are only named differently.
+     *
+     * @param key      The content key of the record
+     * @param producer Writes the record to the path it's given
+     * @return The path of the cached record
+     */
+    public Path getOrCreateRecord(String key, Consumer<Path> producer) {
+        return getOrCreate(directory.resolve(key + RECORD_EXTENSION), key, producer);
+    }
+
+    @FunctionalInterface
+    public interface KeySource {
+        String get() throws IOException;
+    }
+
+    /**
+     * Gets the content key remembered under a location key, computing and remembering it if the location is new.
+     * Remembering it is best effort, when the cache can't be written the content key is computed every time.
+     *
+     * @param locationKey The location key, see {@link #locationKey(Path, ZipIndex, String, String...)}, may be null in
+     *                    which case the content key is always computed
+     * @param contentKey  Computes the content key
+     * @return The content key
+     */
+    public String contentKey(String locationKey, KeySource contentKey) throws IOException {
+        if (locationKey == null) return contentKey.get();
+        var alias = directory.resolve(locationKey + ALIAS_EXTENSION);
+        try {
+            var key = Files.readString(alias, StandardCharsets.US_ASCII);
+            if (isKey(key)) {
+                touch(alias);
+                return key;
+            }
+        } catch (IOException ignored) { } // Not remembered yet
+        var key = contentKey.get();
+        try {
+            getOrCreate(alias, locationKey, output -> {
+                try {
+                    Files.writeString(output, key, StandardCharsets.US_ASCII);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException ignored) { }
+        return key;
+    }
+
+    private static boolean isKey(String key) {
+        if (key.length() != 64) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private Path getOrCreate(Path cachedPath, String key, Consumer<Path> producer) {
+        if (Files.exists(cachedPath)) {
+            touch(cachedPath);
+            return cachedPath;
+        }
+
+        var tempPath = directory.resolve(key + "." + UUID.randomUUID() + TEMP_EXTENSION);
+        try {
+            Files.createDirectories(directory);
+            producer.accept(tempPath);
+            try {
+                Files.move(tempPath, cachedPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (FileSystemException e) {
+                // Another instance won the race and its copy is in use, theirs is identical to ours
+                if (!Files.exists(cachedPath)) throw e;
+            }
+            return cachedPath;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to cache " + cachedPath, e);
+        } finally {
+            try {
+                deleteRecursively(tempPath);
+            } catch (IOException ignored) { }
+        }
+    }
+
+    /**
+     * Evicts the least recently used files until the cache fits its size cap, and cleans up temporary files left
+     * behind by crashed instances. Runs on a daemon thread so it never blocks startup.
+     *
+     * @param keep Cached files that must not be evicted
+     */
+    public void evictInBackground(Path... keep) {
+        var thread = new Thread(() -> evict(Set.of(keep)), "Forgix Multiversion cache eviction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void evict(Set<Path> keep) {
+        long now = System.currentTimeMillis();
+        List<Path> candidates = new ArrayList<>();
+        Map<Path, Long> lastUsed = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        long totalSize = 0;
+
+        try (var files = Files.newDirectoryStream(directory)) {
+            for (var file : files) {
+                var name = file.getFileName().toString();
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (name.endsWith(TEMP_EXTENSION)) {
+                    if (now - modified > IN_USE_GRACE_PERIOD) deleteRecursively(file);
+                    continue;
+                }
+                if (!name.endsWith(EXTENSION) && !name.endsWith(DIRECTORY_EXTENSION) && !name.endsWith(RECORD_EXTENSION)
+                        && !name.endsWith(ALIAS_EXTENSION)) continue;
+
+                long size = sizeOf(file);
+                totalSize += size;
+                if (keep.contains(file) || now - modified < IN_USE_GRACE_PERIOD) continue;
+                candidates.add(file);
+                lastUsed.put(file, modified);
+                sizes.put(file, size);
+            }
+        } catch (IOException ignored) { }
+
+        candidates.sort(Comparator.comparing(lastUsed::get));
+        for (var file : candidates) {
+            if (totalSize <= maxSize) break;
+            try {
+                delete(file);
+                totalSize -= sizes.get(file);
+            } catch (IOException ignored) { } // Most likely still open by another instance
+        }
+    }
+
+    // A directory is moved out of the way first, so it's either still whole or gone, never half deleted
+    private void delete(Path cachedPath) throws IOException {
+        if (!Files.isDirectory(cachedPath)) {
+            Files.deleteIfExists(cachedPath);
+            return;
+        }
+        var tempPath = directory.resolve(cachedPath.getFileName() + "." + UUID.randomUUID() + TEMP_EXTENSION);
+        Files.move(cachedPath, tempPath, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(tempPath);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        try (var files = Files.walk(path)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    private static long sizeOf(Path path) throws IOException {
+        if (!Files.isDirectory(path)) return Files.size(path);
+        try (var files = Files.walk(path)) {
+            long size = 0;
+            for (var file : files.filter(Files::isRegularFile).toList()) size += Files.size(file);
+            return size;
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) { }
+    }
+
+    /**
+     * Computes the cache key for a file produced from the given jar.
+     *
+     * @param sourceJar The jar the cached file is produced from
+     * @param parts     Anything else that affects the produced file, null parts are allowed
+     * @return The hex encoded key
+     */
+    public static String key(Path sourceJar, String... parts) throws IOException {
+        try (var inputStream = Files.newInputStream(sourceJar)) {
+            return key(List.of(inputStream), parts);
+        }
+    }
+
+    /**
+     * Computes the cache key for a file produced from a jar nested in a mod jar, the same key {@link #key(List, String...)}
+     * gives for its bytes. The nested jar is read from the mod jar's index when it's in there, in place from the
+     * memory-mapped mod jar when it's stored.
+     *
+     * @param modJar    The index of the mod jar, may be null in which case the nested jar is read through the loader
+     * @param path      The path of the nested jar inside the mod jar
+     * @param nestedJar The nested jar, as the loader sees it inside the mod jar, may be null if it's in the index
+     * @param parts     Anything else that affects the produced file, null parts are allowed
+     * @return The hex encoded key
+     */
+    public static String key(ZipIndex modJar, String path, Path nestedJar, String... parts) throws IOException {
+        var entry = modJar == null ? null : modJar.getEntry(path);
+        try (var inputStream = entry != null ? modJar.getInputStream(entry) : Files.newInputStream(nestedJar)) {
+            return key(List.of(inputStream), parts);
+        }
+    }
+
+    /**
+     * Computes a key for a jar nested in a mod jar from where it is rather than from its content: the path, size and
+     * modification time of the mod jar and the entry of the nested jar in it. It only takes the attributes of the mod
+     * jar, so it's cheap enough to check on every boot, see {@link #contentKey(String, KeySource)}.
+     *
+     * @param modJarPath The mod jar
+     * @param modJar     The index of the mod jar, may be null
+     * @param path       The path of the nested jar inside the mod jar
+     * @param parts      Anything else that affects the produced file, null parts are allowed
+     * @return The hex encoded key, or null if the nested jar isn't in the index
+     */
+    public static String locationKey(Path modJarPath, ZipIndex modJar, String path, String... parts) throws IOException {
+        var entry = modJar == null ? null : modJar.getEntry(path);
+        if (entry == null) return null;
+        var attributes = Files.readAttributes(modJarPath, BasicFileAttributes.class);
+        List<String> allParts = new ArrayList<>(List.of("location", modJarPath.toAbsolutePath().normalize().toString(),
+                Long.toString(attributes.size()), Long.toString(attributes.lastModifiedTime().toMillis()),
+                path, Long.toHexString(entry.crc()), Long.toString(entry.size())));
+        allParts.addAll(Arrays.asList(parts));
+        return key(List.of(), allParts.toArray(String[]::new));
+    }
+
+    /**
+     * Computes the cache key for a file produced from the given streams, which are read fully but not closed.
+     *
+     * @param sources The contents the cached file is produced from
+     * @param parts   Anything else that affects the produced file, null parts are allowed
+     * @return The hex encoded key
+     */
+    public static String key(List<InputStream> sources, String... parts) throws IOException {
+        var digest = sha256();
+        digest.update(CACHE_FORMAT.getBytes(StandardCharsets.UTF_8));
+        var buffer = new byte[64 * 1024];
+        for (var source : sources) {
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        for (var part : parts) {
+            digest.update((byte) (part == null ? 1 : 0)); // Separator, so ("ab", "c") and ("a", "bc") differ
+            if (part != null) digest.update(part.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.pacifistmc.forgix.multiversion.cache;
+
+import io.github.pacifistmc.forgix.multiversion.fs.StoredNestedJars;
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.security.CodeSigner;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Signature verification of signed nested jars, done once per nested jar content and remembered in an
+ * {@link ExtractionCache}, so a tampered one fails to load with its mod rather than on its first class without every
+ * boot digesting it again.
+ * <p>
+ * Most nested jars aren't signed, which {@link #isSigned(ZipIndex, String, Path)} tells from the nested jar's own
+ * central directory without reading any entry; those are never digested nor recorded. Verifying a signed one reads
+ * every entry through a {@link JarInputStream}, which checks the digest of every signed entry against the manifest;
+ * an entry that doesn't match or isn't signed at all fails with a {@link SecurityException} and nothing is recorded.
+ * The record is named after the content key of the nested jar, which later boots find through its location key, see
+ * {@link ExtractionCache#contentKey(String, ExtractionCache.KeySource)}, so a changed nested jar is verified again.
+ */
+public final class NestedJarVerification {
+    private NestedJarVerification() { }
+
+    /**
+     * What verifying a signed nested jar found.
+     *
+     * @param signers SHA-256 fingerprints of the certificates that signed every entry
+     */
+    public record Verification(List<String> signers) { }
+
+    /**
+     * Checks whether a nested jar has a signature file. Stored nested jars are checked in place in the memory-mapped mod
+     * jar, others through the root they're mounted at, which has their central directory loaded already.
+     *
+     * @param modJar The index of the mod jar, may be null
+     * @param path   The path of the nested jar inside the mod jar
+     * @param root   The root the nested jar is mounted at, may also contain other nested jars merged with it
+     * @return Whether the nested jar is signed and needs verifying
+     */
+    public static boolean isSigned(ZipIndex modJar, String path, Path root) throws IOException {
+        var stored = StoredNestedJars.findStored(modJar, path);
+        if (stored != null) {
+            try {
+                return StoredNestedJars.index(modJar, stored).entries().stream().anyMatch(entry -> isSignatureBlock(entry.name()));
+            } catch (ZipException ignored) { } // Check it through the root instead
+        }
+
+        try (var files = Files.newDirectoryStream(root.resolve("META-INF"))) {
+            for (var file : files) {
+                if (isSignatureBlock("META-INF/" + file.getFileName())) return true;
+            }
+        } catch (NoSuchFileException | NotDirectoryException ignored) { }
+        return false;
+    }
+
+    /**
+     * Verifies a signed nested jar, or gets the result of verifying the same content before.
+     *
+     * @param cache      The cache the result is remembered in across boots
+     * @param modJarPath The mod jar
+     * @param modJar     The index of the mod jar, may be null in which case the nested jar is read through the loader
+     * @param path       The path of the nested jar inside the mod jar
+     * @param nestedJar  The nested jar, as the loader sees it inside the mod jar
+     * @return The verification
+     * @throws SecurityException If an entry isn't signed or doesn't match the digest it was signed with
+     */
+    public static Verification verify(ExtractionCache cache, Path modJarPath, ZipIndex modJar, String path, Path nestedJar) throws IOException {
+        var key = cache.contentKey(ExtractionCache.locationKey(modJarPath, modJar, path), () -> ExtractionCache.key(modJar, path, nestedJar));
+        try {
+            return read(cache.getOrCreateRecord(key, output -> {
+                try {
+                    write(verifyNow(nestedJar), output);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (SecurityException e) {
+            throw e;
+        } catch (RuntimeException | IOException e) {
+            return verifyNow(nestedJar); // The cache can't be written, verify without remembering it across boots
+        }
+    }
+
+    private static Verification verifyNow(Path nestedJar) throws IOException {
+        try (var jis = new JarInputStream(Files.newInputStream(nestedJar), true)) {
+            Set<String> signers = null;
+            JarEntry entry;
+            while ((entry = jis.getNextJarEntry()) != null) {
+                jis.transferTo(OutputStream.nullOutputStream()); // Reading an entry to its end checks its digest
+                if (entry.isDirectory() || isSignatureFile(entry.getName())) continue;
+
+                var entrySigners = fingerprints(entry.getCodeSigners());
+                if (entrySigners.isEmpty()) throw new SecurityException("Entry " + entry.getName() + " of signed jar " + nestedJar + " isn't signed");
+                if (signers == null) signers = entrySigners;
+                else signers.retainAll(entrySigners);
+            }
+            return new Verification(signers == null ? List.of() : signers.stream().sorted().toList());
+        }
+    }
+
+    private static void write(Verification verification, Path output) throws IOException {
+        Files.write(output, verification.signers(), StandardCharsets.US_ASCII);
+    }
+
+    private static Verification read(Path record) throws IOException {
+        return new Verification(List.copyOf(Files.readAllLines(record, StandardCharsets.US_ASCII)));
+    }
+
+    private static boolean isSignatureBlock(String name) {
+        return isSignatureFile(name) && name.toUpperCase(Locale.ROOT).endsWith(".SF");
+    }
+
+    // The manifest and the files that sign it, which aren't signed themselves
+    private static boolean isSignatureFile(String name) {
+        var upperCase = name.toUpperCase(Locale.ROOT);
+        if (!upperCase.startsWith("META-INF/") || upperCase.indexOf('/', "META-INF/".length()) >= 0) return false;
+        return upperCase.equals(JarFile.MANIFEST_NAME) || upperCase.startsWith("META-INF/SIG-") || upperCase.endsWith(".SF")
+                || upperCase.endsWith(".RSA") || upperCase.endsWith(".DSA") || upperCase.endsWith(".EC");
+    }
+
+    private static Set<String> fingerprints(CodeSigner[] codeSigners) throws IOException {
+        Set<String> fingerprints = new HashSet<>();
+        if (codeSigners == null) return fingerprints;
+        for (var codeSigner : codeSigners) {
+            var certificates = codeSigner.getSignerCertPath().getCertificates();
+            if (certificates.isEmpty()) continue;
+            try {
+                fingerprints.add(HexFormat.of().formatHex(sha256().digest(certificates.get(0).getEncoded())));
+            } catch (CertificateEncodingException e) {
+                throw new IOException("Failed to encode the certificate of " + codeSigner, e);
+            }
+        }
+        return fingerprints;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.github.pacifistmc.forgix.multiversion.discovery;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupPhase;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+import io.github.pacifistmc.forgix.multiversion.versioning.BinaryVersionIndex;
+import io.github.pacifistmc.forgix.multiversion.versioning.ForgixVersionJson;
+import io.github.pacifistmc.forgix.multiversion.versioning.VersionSelection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads multiversion manifests and selects the nested jars to load from them.
+ * <p>
+ * Manifests are parsed straight off the stream as UTF-8 by one shared {@link Gson} (which is thread-safe), and the
+ * selection for a jar is remembered for as long as the jar's size and modification time stay the same, so a jar probed
+ * several times during discovery is only read once. Only the latest selection of every jar is kept.
+ */
+public class ManifestLoader {
+    private static final Gson GSON = new Gson();
+    private static final Map<Path, Selection> SELECTIONS = new ConcurrentHashMap<>();
+
+    private record JarKey(long size, long lastModified, String minecraftVersion) { }
+
+    // The selection made for one version of a jar, replaced once the jar or the Minecraft version changes
+    private record Selection(JarKey key, CompletableFuture<Optional<VersionSelection>> future) { }
+
+    /**
+     * Parses a manifest.
+     *
+     * @param inputStream The input stream, not closed by this method
+     * @return The parsed manifest, or null if it could not be parsed
+     */
+    public static ForgixVersionJson parse(InputStream inputStream) {
+        if (inputStream == null) return null;
+        try {
+            return GSON.fromJson(new InputStreamReader(inputStream, StandardCharsets.UTF_8), ForgixVersionJson.class);
+        } catch (JsonParseException e) {
+            System.err.println("Error parsing " + Forgix.MULTI_VERSION_LOCATION + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Selects the nested jars of the given mod jar, reusing the selection made the last time the same jar (same path,
+     * size and modification time) was probed. See {@link #select(Forgix.ResourceOpener, String, StartupTimings, String)}.
+     *
+     * @param jar              The mod jar, null if it's not a plain file (the selection is not remembered then)
+     * @param resources        Opens resources of the mod jar
+     * @param minecraftVersion The running Minecraft version
+     * @param timings          Where to record the manifest and resolve phases
+     * @return The selection, or null if the jar has no manifest or no version range matches
+     */
+    public static VersionSelection select(Path jar, Forgix.ResourceOpener resources, String minecraftVersion, StartupTimings timings) throws IOException {
+        var subject = jar == null || jar.getFileName() == null ? "self" : jar.getFileName().toString();
+        var key = jarKey(jar, minecraftVersion);
+        if (key == null) return select(resources, minecraftVersion, timings, subject);
+
+        // The manifest is read outside the map, whoever probes the same jar meanwhile waits for this selection
+        var path = jar.toAbsolutePath().normalize();
+        var selection = new Selection(key, new CompletableFuture<>());
+        while (true) {
+            var existing = SELECTIONS.putIfAbsent(path, selection);
+            if (existing == null) break;
+            if (existing.key().equals(key)) return await(existing);
+            if (SELECTIONS.replace(path, existing, selection)) break;
+        }
+
+        try {
+            var selected = select(resources, minecraftVersion, timings, subject);
+            selection.future().complete(Optional.ofNullable(selected));
+            return selected;
+        } catch (Throwable t) {
+            SELECTIONS.remove(path, selection); // Let the next probe try again rather than fail the same way
+            selection.future().completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private static VersionSelection await(Selection selection) throws IOException {
+        try {
+            return selection.future().get().orElse(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a manifest", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static JarKey jarKey(Path jar, String minecraftVersion) {
+        if (jar == null) return null;
+        try {
+            var attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) return null;
+            return new JarKey(attributes.size(), attributes.lastModifiedTime().toMillis(), minecraftVersion);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Selects the nested jars to load for the given Minecraft version.
+     * Uses the precompiled {@link BinaryVersionIndex} when the jar has an up-to-date one that can resolve the version,
+     * and falls back to parsing the json manifest otherwise. Whether the index is up-to-date is told from what the jar
+     * records for the manifest (see {@link Forgix.ResourceOpener#recorded(String)}), the manifest itself isn't read.
+     *
+     * @param resources        Opens resources of the mod jar
+     * @param minecraftVersion The running Minecraft version
+     * @param timings          Where to record the manifest and resolve phases
+     * @param subject          The name of the mod jar in the timings
+     * @return The selection, or null if the jar has no manifest or no version range matches
+     */
+    public static VersionSelection select(Forgix.ResourceOpener resources, String minecraftVersion, StartupTimings timings, String subject) throws IOException {
+        BinaryVersionIndex index;
+        ForgixVersionJson forgix = null;
+        try (var phase = timings.start(StartupPhase.MANIFEST, subject)) {
+            index = readBinaryVersionIndex(resources, phase);
+            if (index != null && (!index.canResolve(minecraftVersion) || !isIndexCurrent(index, resources))) index = null;
+
+            if (index == null) {
+                try (var inputStream = resources.open(Forgix.MULTI_VERSION_LOCATION)) {
+                    if (inputStream == null) return null;
+                    var counter = new CountingInputStream(inputStream);
+                    forgix = parse(counter);
+                    phase.addBytes(counter.count);
+                }
+                if (forgix == null) return null;
+            }
+        }
+
+        var selectedIndex = index;
+        var manifest = forgix;
+        return timings.time(StartupPhase.RESOLVE, subject, () -> {
+            var versionPath = selectedIndex != null ? selectedIndex.getPathForVersion(minecraftVersion) : manifest.getPathForVersion(minecraftVersion);
+            if (versionPath == null) return null;
+            return new VersionSelection(versionPath, selectedIndex != null ? selectedIndex.getSharedLibrary() : manifest.getSharedLibrary());
+        });
+    }
+
+    // The checksum the index records is the CRC-32 the jar records for the manifest, so a manifest edited after the
+    // build is caught without reading it. Jars that don't record one (exploded, or opened by the loader) are trusted, the
+    // build writes both files together
+    private static boolean isIndexCurrent(BinaryVersionIndex index, Forgix.ResourceOpener resources) throws IOException {
+        var manifest = resources.recorded(Forgix.MULTI_VERSION_LOCATION);
+        return manifest == null || index.isGeneratedFrom(manifest.size(), manifest.crc());
+    }
+
+    private static BinaryVersionIndex readBinaryVersionIndex(Forgix.ResourceOpener resources, StartupTimings.Phase phase) {
+        try (var inputStream = resources.open(BinaryVersionIndex.LOCATION)) {
+            if (inputStream == null) return null;
+            var counter = new CountingInputStream(inputStream);
+            var index = BinaryVersionIndex.read(counter);
+            phase.addBytes(counter.count);
+            return index;
+        } catch (IOException e) {
+            return null; // Corrupt or from a newer format, the json manifest still works
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) count++;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+    }
+}
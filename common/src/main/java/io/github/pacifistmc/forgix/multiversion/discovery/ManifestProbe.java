@@ -0,0 +1,87 @@
+package io.github.pacifistmc.forgix.multiversion.discovery;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks whether a jar contains a multiversion manifest without building a mod file for it.
+ * <p>
+ * Jars are probed through their central directory, which takes a single lookup, so the loader's jar scanning (entries,
+ * packages, manifest) is only paid for jars that actually select a version.
+ */
+public class ManifestProbe {
+    /**
+     * Probes a jar, or the directory of an exploded jar, for a multiversion manifest.
+     *
+     * @param jar The jar
+     * @return Opens resources of the jar, or null if the jar has no manifest
+     */
+    public static Forgix.ResourceOpener probe(Path jar) throws IOException {
+        if (Files.isDirectory(jar)) {
+            if (!Files.isRegularFile(jar.resolve(Forgix.MULTI_VERSION_LOCATION))) return null;
+            return path -> {
+                try {
+                    return Files.newInputStream(jar.resolve(path));
+                } catch (NoSuchFileException e) {
+                    return null;
+                }
+            };
+        }
+
+        ZipIndex index;
+        try {
+            index = ZipIndex.open(jar);
+        } catch (ZipException e) { // Something ZipIndex doesn't support, like ZIP64
+            return probeZipFile(jar);
+        }
+        if (index.getEntry(Forgix.MULTI_VERSION_LOCATION) == null) return null;
+        return new Forgix.ResourceOpener() {
+            @Override
+            public InputStream open(String path) throws IOException {
+                var entry = index.getEntry(path);
+                return entry == null ? null : index.getInputStream(entry);
+            }
+
+            @Override
+            public Forgix.RecordedEntry recorded(String path) {
+                var entry = index.getEntry(path);
+                return entry == null ? null : new Forgix.RecordedEntry(entry.size(), entry.crc());
+            }
+        };
+    }
+
+    private static Forgix.ResourceOpener probeZipFile(Path jar) throws IOException {
+        try (var zip = new ZipFile(jar.toFile())) {
+            if (zip.getEntry(Forgix.MULTI_VERSION_LOCATION) == null) return null;
+        }
+        return new Forgix.ResourceOpener() {
+            @Override
+            public InputStream open(String path) throws IOException {
+                try (var zip = new ZipFile(jar.toFile())) {
+                    var entry = zip.getEntry(path);
+                    if (entry == null) return null;
+                    try (var in = zip.getInputStream(entry)) {
+                        return new ByteArrayInputStream(in.readAllBytes());
+                    }
+                }
+            }
+
+            @Override
+            public Forgix.RecordedEntry recorded(String path) throws IOException {
+                try (var zip = new ZipFile(jar.toFile())) {
+                    var entry = zip.getEntry(path);
+                    return entry == null || entry.getCrc() == -1 ? null : new Forgix.RecordedEntry(entry.getSize(), entry.getCrc());
+                }
+            }
+        };
+    }
+}
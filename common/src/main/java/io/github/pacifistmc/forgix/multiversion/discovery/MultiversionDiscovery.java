@@ -0,0 +1,89 @@
+package io.github.pacifistmc.forgix.multiversion.discovery;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Resolves every multiversion mod of a pack concurrently on a bounded pool of workers.
+ */
+public class MultiversionDiscovery {
+    public static final int MAX_WORKERS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    private static final String CLAIM_PREFIX = "forgix.multiversion.claim.";
+    private static final String CLAIMANT = UUID.randomUUID().toString(); // One per copy of this class, not per locator
+
+    /**
+     * Claims a multiversion mod for this copy of Forgix. Every Forgix jar in a pack brings its own copy of the locator,
+     * in its own class loader, and every copy sees every multiversion mod, so only the copy that claims a mod first
+     * resolves it. Claims are shared through the system properties, which every class loader sees.
+     * <p>
+     * Claiming a mod this copy already claimed succeeds, so discovery can run again.
+     *
+     * @param path The path of the mod jar
+     * @return true if this copy should resolve the mod, false if another copy already does
+     */
+    public static boolean claim(Path path) {
+        var claimant = System.getProperties().putIfAbsent(CLAIM_PREFIX + path.toAbsolutePath().normalize(), CLAIMANT);
+        return claimant == null || claimant.equals(CLAIMANT);
+    }
+
+    /**
+     * Resolves every candidate concurrently. The results are returned in the order of the candidates, no matter the
+     * order the workers finish in, so discovery stays deterministic.
+     * <p>
+     * If resolving a candidate throws, the exception is rethrown on the calling thread as-is.
+     *
+     * @param candidates The candidates to resolve
+     * @param resolver   Resolves a candidate, returning an empty optional if there's nothing to add for it
+     * @return The results, in the order of the candidates
+     */
+    public static <T, R> List<R> resolveAll(List<T> candidates, Function<T, Optional<R>> resolver) {
+        List<R> results = new ArrayList<>(candidates.size());
+        if (candidates.size() <= 1) { // Not worth spinning up a pool for
+            candidates.forEach(candidate -> resolver.apply(candidate).ifPresent(results::add));
+            return results;
+        }
+
+        var executor = newExecutor(Math.min(candidates.size(), MAX_WORKERS));
+        try {
+            List<Future<Optional<R>>> futures = new ArrayList<>(candidates.size());
+            for (var candidate : candidates) {
+                futures.add(executor.submit(() -> resolver.apply(candidate)));
+            }
+            for (var future : futures) {
+                future.get().ifPresent(results::add);
+            }
+            return results;
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while resolving multiversion mods", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(int workers) {
+        var contextClassLoader = Thread.currentThread().getContextClassLoader(); // Workers see what the loader thread sees
+        var counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(workers, runnable -> {
+            var thread = new Thread(runnable, "Forgix Multiversion discovery-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import io.github.pacifistmc.forgix.multiversion.cache.ExplodedJars;
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.cache.NestedJarVerification;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.ZipException;
+
+/**
+ * Mounts the version jar and shared library a mod selected as the roots its mod file is built from, the same way for
+ * every loader that takes a list of roots (Forge and NeoForge).
+ * <p>
+ * In order of preference: exploded directories in the cache when {@link ExplodedJars#ENABLED}, every nested jar merged
+ * into one root in place when they're all stored, each stored one in place on its own, and the loader's jar-in-jar file
+ * system for the rest. Loaders only differ in how a nested jar is found in the mod file and how their jar-in-jar file
+ * system is mounted, which they pass in.
+ */
+public final class NestedJarMounter {
+    private final NestedJarMounts mounts;
+    private final JarInJar jarInJar;
+    private final ExtractionCache cache;
+    private final BiConsumer<String, Exception> debugLogger;
+
+    /**
+     * @param mounts         The pool the jar-in-jar mounts are shared through
+     * @param jarInJar       Mounts a nested jar through the loader's jar-in-jar file system
+     * @param cache          The cache nested jars are exploded into
+     * @param debugLogger    Logs at debug level, e.g. why a way of mounting failed and the next one is tried
+     */
+    public NestedJarMounter(NestedJarMounts mounts, JarInJar jarInJar, ExtractionCache cache, BiConsumer<String, Exception> debugLogger) {
+        this.mounts = mounts;
+        this.jarInJar = jarInJar;
+        this.cache = cache;
+        this.debugLogger = debugLogger;
+    }
+
+    @FunctionalInterface
+    public interface JarInJar {
+        /**
+         * @param uri       The URI to mount the nested jar at
+         * @param nestedJar The nested jar, as found in the mod file
+         * @return The newly mounted file system
+         */
+        FileSystem mount(URI uri, Path nestedJar) throws Exception;
+    }
+
+    /**
+     * The roots of the mounted nested jars, and the leases on the mounts among them. The leases are either bound to the
+     * mod file built from the roots or released if there's none.
+     */
+    public record Mounted(List<Path> roots, List<NestedJarMounts.Lease> leases) {
+        /**
+         * Keeps the mounts open as long as the given mod file is around.
+         *
+         * @param modFile The mod file built from the roots
+         */
+        public void bindTo(Object modFile) {
+            leases.forEach(lease -> lease.bindTo(modFile));
+        }
+
+        public void release() {
+            leases.forEach(NestedJarMounts.Lease::release);
+        }
+    }
+
+    /**
+     * Mounts the nested jars of a mod and verifies the signed ones, see {@link NestedJarVerification}.
+     *
+     * @param modJarPath        The mod jar
+     * @param versionPath       The path of the version jar inside the mod jar
+     * @param sharedLibraryPath The path of the shared library inside the mod jar, or null if there is none
+     * @param resolver          Finds a nested jar in the mod file
+     * @param phase             The mount phase of the mod
+     * @return The mounted nested jars, the version jar first
+     */
+    public Mounted mount(Path modJarPath, String versionPath, String sharedLibraryPath, Function<String, Path> resolver, StartupTimings.Phase phase) throws Exception {
+        var modJar = StoredNestedJars.mapModJar(modJarPath);
+        var name = String.valueOf(modJarPath.getFileName());
+        List<NestedJarMounts.Lease> leases = new ArrayList<>();
+        try {
+            var roots = mountNestedJars(name, modJarPath, modJar, versionPath, sharedLibraryPath, resolver, phase, leases);
+            verifyNestedJars(name, modJarPath, modJar, versionPath, sharedLibraryPath, resolver, roots);
+            return new Mounted(roots, leases);
+        } catch (Exception e) {
+            leases.forEach(NestedJarMounts.Lease::release);
+            throw e;
+        }
+    }
+
+    // When every nested jar is stored, they're mounted in place from the memory-mapped mod jar as one merged root. An
+    // index over the mapped mod jar is only its central directory, so the shared library isn't shared between merged roots
+    private List<Path> mountNestedJars(String name, Path modJarPath, ZipIndex modJar, String versionPath, String sharedLibraryPath, Function<String, Path> resolver, StartupTimings.Phase phase, List<NestedJarMounts.Lease> leases) throws Exception {
+        if (ExplodedJars.ENABLED) {
+            try {
+                return explodeNestedJars(modJarPath, modJar, versionPath, sharedLibraryPath, resolver);
+            } catch (IOException | RuntimeException e) {
+                debugLogger.accept("Failed to explode " + versionPath + " from " + name + " into " + cache.getDirectory() + ", mounting it instead", e);
+            }
+        }
+
+        var version = StoredNestedJars.findStored(modJar, versionPath);
+        var sharedLibrary = sharedLibraryPath == null ? null : StoredNestedJars.findStored(modJar, sharedLibraryPath);
+        if (version != null && (sharedLibraryPath == null || sharedLibrary != null)) {
+            try {
+                var key = URI.create("forgix-in-place:" + ExtractionCache.locationKey(modJarPath, modJar, versionPath, sharedLibraryPath));
+                var lease = mounts.acquire(key, uri -> {
+                    List<ZipIndex> nestedJars = new ArrayList<>();
+                    nestedJars.add(StoredNestedJars.index(modJar, version));
+                    if (sharedLibrary != null) nestedJars.add(StoredNestedJars.index(modJar, sharedLibrary));
+                    return StoredNestedJars.mount(name + "!/" + versionPath, nestedJars.toArray(ZipIndex[]::new));
+                });
+                leases.add(lease);
+                phase.addBytes(version.size() + (sharedLibrary == null ? 0 : sharedLibrary.size()));
+                return List.of(lease.root());
+            } catch (ZipException e) {
+                debugLogger.accept("Failed to merge " + versionPath + " from " + name + " in place", e);
+            }
+        }
+
+        List<Path> roots = new ArrayList<>();
+        roots.add(mountNestedJar(name, modJarPath, modJar, versionPath, version, resolver, phase, leases));
+        if (sharedLibraryPath != null) {
+            // Mods shipping an identical shared library share one mount of it, stored ones in place
+            if (sharedLibrary != null) {
+                try {
+                    var key = URI.create("forgix-shared-library:" + SharedLibraries.key(modJar, sharedLibraryPath, () -> ExtractionCache.key(modJar, sharedLibraryPath, null)));
+                    roots.add(mountInPlace(key, name, modJar, sharedLibraryPath, sharedLibrary, phase, leases));
+                    return roots;
+                } catch (ZipException e) {
+                    debugLogger.accept("Failed to mount " + sharedLibraryPath + " from " + name + " in place, falling back to jij", e);
+                }
+            }
+            // and compressed ones through the jij mount of whichever mod mounted it first
+            var nestedJar = resolver.apply(sharedLibraryPath);
+            var key = URI.create("forgix-shared-library:" + SharedLibraries.key(modJar, sharedLibraryPath, () -> ExtractionCache.key(modJar, sharedLibraryPath, nestedJar)));
+            roots.add(mountJij(key, nestedJar, phase, leases));
+        }
+        return roots;
+    }
+
+    // Stored nested jars are mounted in place from the memory-mapped mod jar, compressed ones through jij
+    private Path mountNestedJar(String name, Path modJarPath, ZipIndex modJar, String nestedPath, ZipIndex.Entry stored, Function<String, Path> resolver, StartupTimings.Phase phase, List<NestedJarMounts.Lease> leases) throws Exception {
+        if (stored != null) {
+            try {
+                var key = URI.create("forgix-in-place:" + ExtractionCache.locationKey(modJarPath, modJar, nestedPath));
+                return mountInPlace(key, name, modJar, nestedPath, stored, phase, leases);
+            } catch (ZipException e) {
+                debugLogger.accept("Failed to mount " + nestedPath + " from " + name + " in place, falling back to jij", e);
+            }
+        }
+        var nestedJar = resolver.apply(nestedPath);
+        return mountJij(jijUri(nestedJar), nestedJar, phase, leases);
+    }
+
+    // Plain directories in the cache, the slow unpacking only happens on the first boot
+    private List<Path> explodeNestedJars(Path modJarPath, ZipIndex modJar, String versionPath, String sharedLibraryPath, Function<String, Path> resolver) throws IOException {
+        List<Path> roots = new ArrayList<>();
+        roots.add(ExplodedJars.explode(cache, modJarPath, modJar, versionPath, resolver.apply(versionPath)));
+        if (sharedLibraryPath != null) roots.add(ExplodedJars.explode(cache, modJarPath, modJar, sharedLibraryPath, resolver.apply(sharedLibraryPath)));
+        return roots;
+    }
+
+    // In-place mounts are pooled by where they are in which version of the mod jar, a replaced mod jar is mounted anew
+    private Path mountInPlace(URI key, String name, ZipIndex modJar, String nestedPath, ZipIndex.Entry stored, StartupTimings.Phase phase, List<NestedJarMounts.Lease> leases) throws Exception {
+        var lease = mounts.acquire(key, uri -> StoredNestedJars.mount(name + "!/" + nestedPath, StoredNestedJars.index(modJar, stored)));
+        leases.add(lease);
+        phase.addBytes(stored.size());
+        return lease.root();
+    }
+
+    // Reuses the jij mount under the key if it's already mounted, e.g. when discovery runs again
+    private Path mountJij(URI key, Path nestedJar, StartupTimings.Phase phase, List<NestedJarMounts.Lease> leases) throws Exception {
+        var lease = mounts.acquire(key, jijUri(nestedJar), uri -> jarInJar.mount(uri, nestedJar));
+        leases.add(lease);
+        phase.addBytes(Files.size(nestedJar));
+        return lease.root();
+    }
+
+    private static URI jijUri(Path nestedJar) throws URISyntaxException {
+        return new URI("jij:" + nestedJar.toAbsolutePath().toUri().getRawSchemeSpecificPart()).normalize();
+    }
+
+    // Unsigned nested jars, most of them, are told apart by their central directory and never digested. The roots are
+    // in the same order as the paths, unless the nested jars were merged into one
+    private void verifyNestedJars(String name, Path modJarPath, ZipIndex modJar, String versionPath, String sharedLibraryPath, Function<String, Path> resolver, List<Path> roots) throws IOException {
+        var paths = new String[] { versionPath, sharedLibraryPath };
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] == null || !NestedJarVerification.isSigned(modJar, paths[i], roots.get(Math.min(i, roots.size() - 1)))) continue;
+            var verification = NestedJarVerification.verify(cache, modJarPath, modJar, paths[i], resolver.apply(paths[i]));
+            debugLogger.accept("Verified " + paths[i] + " from " + name + ", signed by " + verification.signers(), null);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nested jars mounted through the loader's own file systems (e.g. jij) or in place ({@link StoredNestedJars}), shared
+ * by everyone who mounts the same nested jar and closed once nobody uses them anymore.
+ * <p>
+ * Mounts are keyed by their canonical URI, so mounting a nested jar that's already mounted hands out the existing
+ * file system instead of failing or opening another copy of its central directory. A mount can be keyed by something
+ * else than its URI, e.g. the content of the nested jar so identical jars nested in different mods share one mount.
+ * Every caller gets a {@link Lease}; a lease is either released directly, or bound to the mod file built from the mount
+ * and released once the loader lets go of that mod file (e.g. when discovery runs again). The file system is closed
+ * when its last lease is released.
+ * <pre>{@code
+ * var lease = mounts.acquire(uri, jij -> FileSystems.newFileSystem(jij, env));
+ * var modFile = createModFile(lease.root());
+ * lease.bindTo(modFile);
+ * }</pre>
+ */
+public final class NestedJarMounts {
+    private static final Map<String, NestedJarMounts> PLATFORMS = new ConcurrentHashMap<>();
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Map<URI, Mount> mounts = new HashMap<>();
+
+    private NestedJarMounts() { }
+
+    /**
+     * Gets the mounts of the given platform, see {@link io.github.pacifistmc.forgix.multiversion.platform.services.IPlatformHelper#getNestedJarMounts()}.
+     *
+     * @param platform The platform name
+     * @return The mounts, shared by every caller for the same platform
+     */
+    public static NestedJarMounts forPlatform(String platform) {
+        return PLATFORMS.computeIfAbsent(platform, ignored -> new NestedJarMounts());
+    }
+
+    @FunctionalInterface
+    public interface Mounter {
+        /**
+         * @param uri The URI of the nested jar, as it was passed to {@link #acquire(URI, URI, Mounter)}
+         * @return The newly mounted file system
+         */
+        FileSystem mount(URI uri) throws Exception;
+    }
+
+    private final class Mount {
+        private final URI key;
+        private final FileSystem fileSystem;
+        private final boolean owned; // False if someone else mounted it, then it's theirs to close
+        private int references;
+
+        private Mount(URI key, FileSystem fileSystem, boolean owned) {
+            this.key = key;
+            this.fileSystem = fileSystem;
+            this.owned = owned;
+        }
+    }
+
+    /**
+     * A reference to a mounted nested jar. Releasing it more than once, or after the mod file it's bound to is gone,
+     * does nothing.
+     */
+    public final class Lease {
+        private final Mount mount;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Mount mount) {
+            this.mount = mount;
+        }
+
+        /**
+         * @return The root of the mounted nested jar
+         */
+        public Path root() {
+            return mount.fileSystem.getPath("/");
+        }
+
+        /**
+         * Releases the lease once the given owner (usually the mod file built from the mount) is no longer reachable.
+         *
+         * @param owner The owner, must not be referenced by the mount itself
+         */
+        public void bindTo(Object owner) {
+            CLEANER.register(owner, this::release);
+        }
+
+        /**
+         * Releases the lease now, closing the mount if this was its last lease.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) NestedJarMounts.this.release(mount);
+        }
+    }
+
+    /**
+     * Gets a lease on a nested jar, mounting it if it isn't mounted yet.
+     *
+     * @param uri     The URI of the nested jar
+     * @param mounter Mounts the nested jar
+     * @return The lease
+     */
+    public Lease acquire(URI uri, Mounter mounter) throws Exception {
+        return acquire(uri, uri, mounter);
+    }
+
+    /**
+     * Gets a lease on the mount with the given key, mounting the nested jar if nothing is mounted under that key yet.
+     *
+     * @param key     The key of the mount, every nested jar acquired with the same key must have the same content
+     * @param uri     The URI of the nested jar, only used when it needs to be mounted
+     * @param mounter Mounts the nested jar
+     * @return The lease
+     */
+    public Lease acquire(URI key, URI uri, Mounter mounter) throws Exception {
+        key = canonicalize(key);
+        // Mounting happens under the lock too, so two discovery workers never mount the same jar side by side
+        synchronized (this) {
+            var mount = mounts.get(key);
+            if (mount == null || !mount.fileSystem.isOpen()) {
+                mount = mount(key, uri, mounter);
+                mounts.put(key, mount);
+            }
+            mount.references++;
+            return new Lease(mount);
+        }
+    }
+
+    // The canonical URI is only the key, the loader's file system provider gets the URI it was given
+    private Mount mount(URI key, URI uri, Mounter mounter) throws Exception {
+        try {
+            return new Mount(key, mounter.mount(uri), true);
+        } catch (FileSystemAlreadyExistsException e) {
+            return new Mount(key, FileSystems.getFileSystem(uri), false);
+        }
+    }
+
+    private void release(Mount mount) {
+        synchronized (this) {
+            if (--mount.references > 0) return;
+            mounts.remove(mount.key, mount);
+        }
+        if (!mount.owned) return;
+        try {
+            mount.fileSystem.close();
+        } catch (IOException | UnsupportedOperationException ignored) { }
+    }
+
+    /**
+     * Gets the number of nested jars mounted right now.
+     *
+     * @return The number of mounts
+     */
+    public synchronized int size() {
+        return mounts.size();
+    }
+
+    // Scheme case and redundant path segments don't make another mount. Opaque URIs like jij:file:///mod.jar wrap
+    // another URI, which is canonicalized in turn
+    static URI canonicalize(URI uri) {
+        if (uri.getScheme() == null) return uri.normalize();
+        var scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!uri.isOpaque()) {
+            var normalized = uri.normalize().toString();
+            return URI.create(scheme + normalized.substring(normalized.indexOf(':')));
+        }
+
+        var inner = uri.getRawSchemeSpecificPart();
+        try {
+            inner = canonicalize(new URI(inner)).toString();
+        } catch (URISyntaxException ignored) { }
+        return URI.create(scheme + ":" + inner + (uri.getRawFragment() == null ? "" : "#" + uri.getRawFragment()));
+    }
+}
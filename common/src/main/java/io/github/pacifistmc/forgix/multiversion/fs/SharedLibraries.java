@@ -0,0 +1,161 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+/**
+ * Shared libraries resolved so far, by content, so byte-identical shared libraries nested in different mods (e.g.
+ * sibling mods of the same author) are indexed once and reused by every mod that references them. Mounts are pooled
+ * under {@link #key(ZipIndex, String, ExtractionCache.KeySource)} by {@link NestedJarMounts} instead, so they're closed
+ * once the last mod using them is gone.
+ * <p>
+ * Shared libraries are first grouped by what the central directory of their mod jar records for them, their path,
+ * CRC-32 and size, which costs nothing. A shared library alone in its group keeps the key of the group and is never
+ * hashed. Once a second one joins a group, both are told apart by the SHA-256 of their bytes, the same content key the
+ * {@link ExtractionCache} uses, so a mod can't get its classes served from another mod's shared library by forging a
+ * matching CRC-32. Resolving the same shared library from several threads at once loads it once, the others wait for it.
+ */
+public final class SharedLibraries {
+    private static final Map<Location, Group> groups = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<ZipIndex>> indexes = new ConcurrentHashMap<>();
+
+    private SharedLibraries() { }
+
+    private record Location(String path, long crc, long size) { }
+
+    // The first shared library seen at a location, only hashed once another one shows up there
+    private static final class Group {
+        private final String key;
+        private final ExtractionCache.KeySource content;
+        private final Map<String, String> keysByContent = new HashMap<>();
+        private boolean hashed;
+
+        private Group(Location location, ExtractionCache.KeySource content) throws IOException {
+            this.key = ExtractionCache.key(List.of(), "shared-library", location.path(), Long.toHexString(location.crc()), Long.toString(location.size()));
+            this.content = content;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader<T, E extends Exception> {
+        T load() throws E;
+    }
+
+    /**
+     * Gets the key identical shared libraries share.
+     *
+     * @param modJar  The index of the mod jar, may be null in which case the shared library is always hashed
+     * @param path    The path of the shared library inside the mod jar
+     * @param content Computes the content key of the shared library, see {@link ExtractionCache#key(ZipIndex, String, Path, String...)}
+     * @return The key
+     */
+    public static String key(ZipIndex modJar, String path, ExtractionCache.KeySource content) throws IOException {
+        var entry = modJar == null ? null : modJar.getEntry(path);
+        if (entry == null) return content.get();
+        return key(new Location(path, entry.crc(), entry.size()), content);
+    }
+
+    private static String key(Location location, ExtractionCache.KeySource content) throws IOException {
+        Group group;
+        try {
+            group = groups.computeIfAbsent(location, ignored -> {
+                try {
+                    return new Group(location, content);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (group.content == content) return group.key;
+
+        synchronized (group) {
+            if (!group.hashed) {
+                group.hashed = true;
+                try {
+                    group.keysByContent.put(group.content.get(), group.key);
+                } catch (IOException ignored) { } // The first one can't be read anymore, it's only shared with itself then
+            }
+            return group.keysByContent.computeIfAbsent(content.get(), contentKey -> contentKey);
+        }
+    }
+
+    /**
+     * Gets the index of a shared library stored in a mod jar, loading it if no identical one was loaded before.
+     *
+     * @param modJar The index of the mod jar, may be null in which case the shared library is always loaded
+     * @param path   The path of the shared library inside the mod jar
+     * @param loader Loads the index
+     * @return The index
+     */
+    public static <E extends Exception> ZipIndex index(ZipIndex modJar, String path, Loader<ZipIndex, E> loader) throws E, IOException {
+        if (modJar == null || modJar.getEntry(path) == null) return loader.load();
+        return getOrLoad(indexes, key(modJar, path, () -> ExtractionCache.key(modJar, path, null)), loader);
+    }
+
+    /**
+     * Gets the index of a shared library that was read into memory, keeping only the first copy of identical ones.
+     *
+     * @param modJar The index of the mod jar, may be null in which case the shared library is grouped by its own CRC-32
+     * @param path   The path of the shared library inside the mod jar
+     * @param jar    The bytes of the shared library
+     * @return The index
+     * @throws java.util.zip.ZipException If the shared library can't be indexed (e.g. ZIP64)
+     */
+    public static ZipIndex index(ZipIndex modJar, String path, byte[] jar) throws IOException {
+        ExtractionCache.KeySource content = () -> ExtractionCache.key(List.of(new ByteArrayInputStream(jar)));
+        var entry = modJar == null ? null : modJar.getEntry(path);
+        Location location;
+        if (entry != null) {
+            location = new Location(path, entry.crc(), entry.size());
+        } else {
+            var crc = new CRC32();
+            crc.update(jar);
+            location = new Location(path, crc.getValue(), jar.length);
+        }
+        return getOrLoad(indexes, key(location, content), () -> ZipIndex.read(ByteBuffer.wrap(jar)));
+    }
+
+    @SuppressWarnings("unchecked") // A failed load rethrows what the loader threw, which is either unchecked or an E
+    private static <T, E extends Exception> T getOrLoad(Map<String, CompletableFuture<T>> cache, String key, Loader<T, E> loader) throws E {
+        var future = new CompletableFuture<T>();
+        var existing = cache.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a shared library", e);
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+                if (cause instanceof Error error) throw error;
+                throw (E) cause;
+            }
+        }
+
+        try {
+            var value = loader.load();
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            cache.remove(key, future); // Let the next mod try again rather than fail the same way
+            future.completeExceptionally(t);
+            throw t;
+        }
+    }
+}
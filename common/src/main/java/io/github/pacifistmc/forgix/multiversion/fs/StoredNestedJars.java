@@ -0,0 +1,79 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Mounts nested jars that are stored uncompressed in their mod jar straight from the memory-mapped mod jar.
+ * <p>
+ * A stored jar is laid out in the mod jar exactly as it would be on disk, so its central directory can be read in
+ * place and its entries are served from the page cache, without inflating the nested jar or copying it to the heap.
+ * Deflated nested jars can't be mounted this way, callers fall back to mounting them like they always did.
+ */
+public final class StoredNestedJars {
+    private StoredNestedJars() { }
+
+    /**
+     * Memory-maps a mod jar to look for stored nested jars in.
+     *
+     * @param modJar The mod jar
+     * @return The index of the mod jar, or null if it isn't a plain file on disk or can't be indexed
+     */
+    public static ZipIndex mapModJar(Path modJar) {
+        if (modJar == null || modJar.getFileSystem() != FileSystems.getDefault() || !Files.isRegularFile(modJar)) return null;
+        try {
+            return ZipIndex.open(modJar);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the entry of a nested jar if it can be mounted in place.
+     *
+     * @param modJar     The index of the mod jar, may be null
+     * @param nestedPath The path of the nested jar inside the mod jar
+     * @return The entry, or null if the nested jar is missing or compressed
+     */
+    public static ZipIndex.Entry findStored(ZipIndex modJar, String nestedPath) {
+        if (modJar == null) return null;
+        var entry = modJar.getEntry(nestedPath);
+        return entry != null && entry.method() == ZipEntry.STORED ? entry : null;
+    }
+
+    /**
+     * Indexes a stored nested jar in place.
+     *
+     * @param modJar    The index of the mod jar
+     * @param nestedJar The entry of the nested jar, see {@link #findStored(ZipIndex, String)}
+     * @return The index of the nested jar, backed by the buffer of the mod jar
+     * @throws ZipException If the nested jar can't be indexed (e.g. ZIP64)
+     */
+    public static ZipIndex index(ZipIndex modJar, ZipIndex.Entry nestedJar) throws ZipException {
+        return ZipIndex.read(modJar.getRawData(nestedJar));
+    }
+
+    /**
+     * Mounts indexed nested jars as a single root. When several of them contain an entry, the first one wins, the same
+     * precedence separate roots would give; every lookup is a single probe of the merged tree instead of one per root.
+     *
+     * @param name       The name of the file system
+     * @param nestedJars The indexes of the nested jars in order of precedence, see {@link #index(ZipIndex, ZipIndex.Entry)}
+     * @return The file system of the mounted nested jars, which holds on to the mod jar until it's closed
+     */
+    public static ZipIndexFileSystem mount(String name, ZipIndex... nestedJars) {
+        List<ZipIndexFileSystem.Layer> layers = new ArrayList<>(nestedJars.length);
+        for (var nestedJar : nestedJars) {
+            layers.add(new ZipIndexFileSystem.Layer(nestedJar));
+        }
+        return ZipIndexFileSystem.of(name, layers);
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only file system over the entries of one or more {@link ZipIndex zip indexes}.
+ * <p>
+ * The layers are stacked in order: when several layers contain an entry, the first one wins. Stored entries are
+ * served straight from the buffer of their index, so an index over a memory-mapped file never copies them to the heap.
+ * The directory tree is built once when the file system is created, directories missing from the zips are implied by
+ * the entries inside them.
+ */
+public final class ZipIndexFileSystem extends FileSystem {
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    /**
+     * A zip making up the file system.
+     *
+     * @param index  The zip
+     * @param filter Which entries of the zip are visible, by name
+     */
+    public record Layer(ZipIndex index, Predicate<String> filter) {
+        public Layer(ZipIndex index) {
+            this(index, name -> true);
+        }
+    }
+
+    record Node(ZipIndex index, ZipIndex.Entry entry) { }
+
+    private final String id;
+    private final String name;
+    private final ZipIndexPath root;
+    private final Map<String, Node> files = new HashMap<>();
+    private final Map<String, Set<String>> directories = new HashMap<>(); // Directory name to the names of its children
+    private volatile boolean open = true;
+
+    private ZipIndexFileSystem(String name, List<Layer> layers) {
+        this.id = Integer.toString(ids.incrementAndGet());
+        this.name = name;
+        this.root = new ZipIndexPath(this, "/");
+        directories.put("", new LinkedHashSet<>());
+
+        for (var layer : layers) {
+            for (var entry : layer.index().entries()) {
+                var entryName = entry.name();
+                if (!layer.filter().test(entryName)) continue;
+                if (entry.isDirectory()) {
+                    addDirectory(entryName.substring(0, entryName.length() - 1));
+                } else if (!files.containsKey(entryName) && !directories.containsKey(entryName)) {
+                    files.put(entryName, new Node(layer.index(), entry));
+                    addChild(entryName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a file system over the given zips.
+     *
+     * @param name   The name of the file system, e.g. the path of the jar it's made of
+     * @param layers The zips, in order of precedence
+     * @return The file system
+     */
+    public static ZipIndexFileSystem of(String name, List<Layer> layers) {
+        var fileSystem = new ZipIndexFileSystem(name, layers);
+        ZipIndexFileSystemProvider.INSTANCE.register(fileSystem);
+        return fileSystem;
+    }
+
+    private void addDirectory(String directory) {
+        if (directory.isEmpty() || files.containsKey(directory) || directories.containsKey(directory)) return;
+        directories.put(directory, new LinkedHashSet<>());
+        addChild(directory);
+    }
+
+    private void addChild(String child) {
+        int separator = child.lastIndexOf('/');
+        var parent = separator < 0 ? "" : child.substring(0, separator);
+        addDirectory(parent);
+        var siblings = directories.get(parent);
+        if (siblings != null) siblings.add(child);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    boolean exists(String entryName) {
+        return files.containsKey(entryName) || directories.containsKey(entryName);
+    }
+
+    Node getFile(String entryName) {
+        return files.get(entryName);
+    }
+
+    Set<String> getChildren(String entryName) {
+        return directories.get(entryName);
+    }
+
+    /**
+     * Gets the uncompressed data of a file. Stored entries are returned as a slice of the zip, deflated ones are
+     * inflated into a new buffer.
+     */
+    static ByteBuffer getData(Node node) throws IOException {
+        if (node.entry().method() == ZipEntry.STORED) return node.index().getRawData(node.entry());
+        try (var in = node.index().getInputStream(node.entry())) {
+            return ByteBuffer.wrap(in.readNBytes((int) node.entry().size())).asReadOnlyBuffer();
+        }
+    }
+
+    static InputStream getInputStream(Node node) throws IOException {
+        return node.index().getInputStream(node.entry());
+    }
+
+    void checkOpen() {
+        if (!open) throw new ClosedFileSystemException();
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return ZipIndexFileSystemProvider.INSTANCE;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        ZipIndexFileSystemProvider.INSTANCE.unregister(this);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(root);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) return new ZipIndexPath(this, first);
+        var joined = new StringJoiner("/");
+        if (!first.isEmpty()) joined.add(first);
+        for (var name : more) {
+            if (!name.isEmpty()) joined.add(name);
+        }
+        return new ZipIndexPath(this, joined.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Missing syntax in " + syntaxAndPattern);
+        var syntax = syntaxAndPattern.substring(0, colon);
+        var pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("regex")) regex = Pattern.compile(pattern);
+        else if (syntax.equalsIgnoreCase("glob")) regex = Pattern.compile(globToRegex(pattern));
+        else throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    private static String globToRegex(String glob) {
+        var regex = new StringBuilder("^");
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '{' -> {
+                    regex.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    regex.append(')');
+                    inGroup = false;
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) throw new PatternSyntaxException("Missing ']'", glob, i);
+                    var set = glob.substring(i + 1, end);
+                    regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                    i = end;
+                }
+                case '\\' -> {
+                    if (++i < glob.length()) regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.append('$').toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watching is not supported");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,357 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provider of every {@link ZipIndexFileSystem}. It isn't installed, file systems are created through
+ * {@link ZipIndexFileSystem#of} and their paths carry the provider with them.
+ */
+public final class ZipIndexFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "forgix-zip";
+    public static final ZipIndexFileSystemProvider INSTANCE = new ZipIndexFileSystemProvider();
+
+    private final Map<String, ZipIndexFileSystem> fileSystems = new ConcurrentHashMap<>();
+
+    private ZipIndexFileSystemProvider() { }
+
+    void register(ZipIndexFileSystem fileSystem) {
+        fileSystems.put(fileSystem.getId(), fileSystem);
+    }
+
+    void unregister(ZipIndexFileSystem fileSystem) {
+        fileSystems.remove(fileSystem.getId(), fileSystem);
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        throw new UnsupportedOperationException("Zip index file systems are created through ZipIndexFileSystem.of");
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        return fileSystemOf(uri);
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        var fileSystem = fileSystemOf(uri);
+        var part = uri.getSchemeSpecificPart();
+        return fileSystem.getPath(part.substring(part.indexOf('!') + 1));
+    }
+
+    private ZipIndexFileSystem fileSystemOf(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) throw new IllegalArgumentException("URI scheme is not " + SCHEME);
+        var part = uri.getSchemeSpecificPart();
+        int separator = part.indexOf('!');
+        var fileSystem = fileSystems.get(separator < 0 ? part : part.substring(0, separator));
+        if (fileSystem == null) throw new FileSystemNotFoundException(uri.toString());
+        return fileSystem;
+    }
+
+    private static ZipIndexPath toZipIndexPath(Path path) {
+        if (!(path instanceof ZipIndexPath zipIndexPath)) throw new ProviderMismatchException();
+        zipIndexPath.getFileSystem().checkOpen();
+        return zipIndexPath;
+    }
+
+    private static ZipIndexFileSystem.Node getFile(Path path) throws IOException {
+        var zipIndexPath = toZipIndexPath(path);
+        var entryName = zipIndexPath.entryName();
+        var node = zipIndexPath.getFileSystem().getFile(entryName);
+        if (node != null) return node;
+        if (zipIndexPath.getFileSystem().exists(entryName)) throw new FileSystemException(path + " is a directory");
+        throw new NoSuchFileException(path.toString());
+    }
+
+    private static void checkReadOnly(Collection<? extends OpenOption> options) {
+        for (var option : options) {
+            if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND || option == StandardOpenOption.CREATE ||
+                    option == StandardOpenOption.CREATE_NEW || option == StandardOpenOption.DELETE_ON_CLOSE || option == StandardOpenOption.TRUNCATE_EXISTING) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        checkReadOnly(options);
+        return new ByteBufferChannel(ZipIndexFileSystem.getData(getFile(path)));
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        checkReadOnly(Arrays.asList(options));
+        return ZipIndexFileSystem.getInputStream(getFile(path));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        var zipIndexPath = toZipIndexPath(dir);
+        var fileSystem = zipIndexPath.getFileSystem();
+        var children = fileSystem.getChildren(zipIndexPath.entryName());
+        if (children == null) {
+            if (fileSystem.exists(zipIndexPath.entryName())) throw new NotDirectoryException(dir.toString());
+            throw new NoSuchFileException(dir.toString());
+        }
+
+        // Children are resolved against the given path so the stream returns paths in the same form, like other providers
+        List<Path> paths = new ArrayList<>(children.size());
+        for (var child : children) {
+            var childPath = dir.resolve(child.substring(child.lastIndexOf('/') + 1));
+            if (filter.accept(childPath)) paths.add(childPath);
+        }
+        return new DirectoryStream<>() {
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) throw new IllegalStateException("Iterator already obtained");
+                iterated = true;
+                return paths.iterator();
+            }
+
+            @Override
+            public void close() { }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) {
+        return path.toAbsolutePath().normalize().equals(path2.toAbsolutePath().normalize());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException("Zip index file systems have no file store");
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        var zipIndexPath = toZipIndexPath(path);
+        if (!zipIndexPath.getFileSystem().exists(zipIndexPath.entryName())) throw new NoSuchFileException(path.toString());
+        for (var mode : modes) {
+            if (mode == AccessMode.WRITE) throw new AccessDeniedException(path.toString(), null, "Read-only file system");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) return null;
+        var zipIndexPath = toZipIndexPath(path);
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return ZipIndexFileSystemProvider.this.readAttributes(zipIndexPath, BasicFileAttributes.class);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class) throw new UnsupportedOperationException("Only basic attributes are supported");
+        var zipIndexPath = toZipIndexPath(path);
+        var entryName = zipIndexPath.entryName();
+        var fileSystem = zipIndexPath.getFileSystem();
+        var node = fileSystem.getFile(entryName);
+        if (node == null && !fileSystem.exists(entryName)) throw new NoSuchFileException(path.toString());
+        return (A) new Attributes(node);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        int colon = attributes.indexOf(':');
+        if (colon >= 0 && !attributes.substring(0, colon).equals("basic")) {
+            throw new UnsupportedOperationException("Only basic attributes are supported");
+        }
+        var basic = readAttributes(path, BasicFileAttributes.class);
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", basic.lastModifiedTime());
+        all.put("lastAccessTime", basic.lastAccessTime());
+        all.put("creationTime", basic.creationTime());
+        all.put("size", basic.size());
+        all.put("isRegularFile", basic.isRegularFile());
+        all.put("isDirectory", basic.isDirectory());
+        all.put("isSymbolicLink", basic.isSymbolicLink());
+        all.put("isOther", basic.isOther());
+        all.put("fileKey", basic.fileKey());
+
+        var names = colon >= 0 ? attributes.substring(colon + 1) : attributes;
+        if (names.equals("*")) return all;
+        Map<String, Object> requested = new LinkedHashMap<>();
+        for (var name : names.split(",")) {
+            if (!all.containsKey(name)) throw new IllegalArgumentException("Unknown attribute " + name);
+            requested.put(name, all.get(name));
+        }
+        return requested;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    // Node is null for directories
+    private record Attributes(ZipIndexFileSystem.Node node) implements BasicFileAttributes {
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.fromMillis(node == null ? 0 : node.entry().lastModifiedMillis());
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return node != null;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return node == null;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return node == null ? 0 : node.entry().size();
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+
+    private static final class ByteBufferChannel implements SeekableByteChannel {
+        private final ByteBuffer buffer;
+        private boolean open = true;
+
+        private ByteBufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            checkOpen();
+            if (!buffer.hasRemaining()) return -1;
+            int length = Math.min(destination.remaining(), buffer.remaining());
+            destination.put(destination.position(), buffer, buffer.position(), length);
+            destination.position(destination.position() + length);
+            buffer.position(buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            checkOpen();
+            return buffer.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            if (newPosition < 0) throw new IllegalArgumentException("Negative position");
+            buffer.position((int) Math.min(newPosition, buffer.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return buffer.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void checkOpen() throws ClosedChannelException {
+            if (!open) throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path of a {@link ZipIndexFileSystem}, with '/' as the separator and "/" as the only root, like paths of a zip.
+ */
+final class ZipIndexPath implements Path {
+    private final ZipIndexFileSystem fileSystem;
+    private final String path; // No duplicate or trailing separators, except for the root itself
+    private String[] names;
+
+    ZipIndexPath(ZipIndexFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = clean(path);
+    }
+
+    private static String clean(String path) {
+        var builder = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && (i + 1 == path.length() || path.charAt(i + 1) == '/') && !(builder.isEmpty() && i + 1 == path.length())) continue;
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private String[] names() {
+        var names = this.names;
+        if (names == null) {
+            if (path.isEmpty()) names = new String[] { "" };
+            else names = Arrays.stream(path.split("/")).filter(name -> !name.isEmpty()).toArray(String[]::new);
+            this.names = names;
+        }
+        return names;
+    }
+
+    private ZipIndexPath join(String[] names, int from, int to, boolean absolute) {
+        return new ZipIndexPath(fileSystem, (absolute ? "/" : "") + String.join("/", Arrays.asList(names).subList(from, to)));
+    }
+
+    /**
+     * @return The name of the entry this path points to, without the leading separator; "" for the root
+     */
+    String entryName() {
+        var normalized = ((ZipIndexPath) toAbsolutePath().normalize()).path;
+        return normalized.substring(1);
+    }
+
+    @Override
+    public ZipIndexFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith("/");
+    }
+
+    @Override
+    public Path getRoot() {
+        return isAbsolute() ? fileSystem.getRoot() : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        var names = names();
+        if (names.length == 0) return null;
+        if (names.length == 1 && !isAbsolute()) return this;
+        return new ZipIndexPath(fileSystem, names[names.length - 1]);
+    }
+
+    @Override
+    public Path getParent() {
+        var names = names();
+        if (names.length == 0) return null;
+        if (names.length == 1) return getRoot();
+        return join(names, 0, names.length - 1, isAbsolute());
+    }
+
+    @Override
+    public int getNameCount() {
+        return names().length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        var names = names();
+        if (index < 0 || index >= names.length) throw new IllegalArgumentException("Invalid name index " + index);
+        return new ZipIndexPath(fileSystem, names[index]);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        var names = names();
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath " + beginIndex + " to " + endIndex);
+        }
+        return join(names, beginIndex, endIndex, false);
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof ZipIndexPath that) || that.fileSystem != fileSystem) return false;
+        if (isAbsolute() != that.isAbsolute()) return false;
+        var names = names();
+        var otherNames = that.names();
+        if (otherNames.length > names.length) return false;
+        for (int i = 0; i < otherNames.length; i++) {
+            if (!names[i].equals(otherNames[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof ZipIndexPath that) || that.fileSystem != fileSystem) return false;
+        if (that.isAbsolute()) return equals(that);
+        var names = names();
+        var otherNames = that.names();
+        if (otherNames.length > names.length) return false;
+        for (int i = 1; i <= otherNames.length; i++) {
+            if (!names[names.length - i].equals(otherNames[otherNames.length - i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> normalized = new ArrayList<>();
+        for (var name : names()) {
+            if (name.equals(".") || name.isEmpty()) continue;
+            if (name.equals("..")) {
+                if (!normalized.isEmpty() && !normalized.get(normalized.size() - 1).equals("..")) {
+                    normalized.remove(normalized.size() - 1);
+                    continue;
+                }
+                if (isAbsolute()) continue; // Can't go above the root
+            }
+            normalized.add(name);
+        }
+        return new ZipIndexPath(fileSystem, (isAbsolute() ? "/" : "") + String.join("/", normalized));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        var that = checkPath(other);
+        if (that.isAbsolute()) return that;
+        if (that.path.isEmpty()) return this;
+        if (path.isEmpty()) return that;
+        return new ZipIndexPath(fileSystem, path + "/" + that.path);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        var that = checkPath(other);
+        if (isAbsolute() != that.isAbsolute()) throw new IllegalArgumentException("Can't relativize " + other + " against " + this);
+        var names = ((ZipIndexPath) normalize()).names();
+        var otherNames = ((ZipIndexPath) that.normalize()).names();
+        if (names.length == 1 && names[0].isEmpty()) names = new String[0];
+        if (otherNames.length == 1 && otherNames[0].isEmpty()) otherNames = new String[0];
+
+        int common = 0;
+        while (common < names.length && common < otherNames.length && names[common].equals(otherNames[common])) common++;
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) relative.add("..");
+        relative.addAll(Arrays.asList(otherNames).subList(common, otherNames.length));
+        return new ZipIndexPath(fileSystem, String.join("/", relative));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(ZipIndexFileSystemProvider.SCHEME, fileSystem.getId() + "!" + ((ZipIndexPath) toAbsolutePath()).path, null);
+        } catch (URISyntaxException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return isAbsolute() ? this : new ZipIndexPath(fileSystem, "/" + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws NoSuchFileException {
+        var real = (ZipIndexPath) toAbsolutePath().normalize();
+        if (!fileSystem.exists(real.entryName())) throw new NoSuchFileException(toString());
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watching is not supported");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(((ZipIndexPath) other).path);
+    }
+
+    private ZipIndexPath checkPath(Path other) {
+        if (!(other instanceof ZipIndexPath that) || that.fileSystem != fileSystem) throw new ProviderMismatchException();
+        return that;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ZipIndexPath that && that.fileSystem == fileSystem && that.path.equals(path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.pacifistmc.forgix.multiversion.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a single {@link StartupPhase} of a single mod.
+ * Only ever touched through {@link StartupTimings}, which checks that JFR is available first (a runtime image can be
+ * built without the jdk.jfr module).
+ */
+@Name("io.github.pacifistmc.forgix.multiversion.Phase")
+@Label("Forgix Multiversion Phase")
+@Category({ "Forgix", "Multiversion" })
+@Description("A startup phase of the Forgix multiversion locator")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Platform")
+    String platform;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Mod File")
+    String subject;
+
+    @Label("Bytes Processed")
+    @DataAmount
+    long bytes;
+
+    static Object begin(String platform, StartupPhase phase, String subject) {
+        var event = new PhaseEvent();
+        if (!event.isEnabled()) return null;
+        event.platform = platform;
+        event.phase = phase.getKey();
+        event.subject = subject;
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object event, long bytes) {
+        var phaseEvent = (PhaseEvent) event;
+        phaseEvent.bytes = bytes;
+        phaseEvent.commit();
+    }
+}
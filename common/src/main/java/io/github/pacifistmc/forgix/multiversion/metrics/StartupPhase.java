@@ -0,0 +1,40 @@
+package io.github.pacifistmc.forgix.multiversion.metrics;
+
+/**
+ * The phases a locator goes through for every multiversion mod.
+ */
+public enum StartupPhase {
+    /**
+     * Building the SecureJar/ModFile of the locator's own jar.
+     */
+    SELF_JAR("selfJar"),
+    /**
+     * Reading the multiversion manifest (or its precompiled index).
+     */
+    MANIFEST("manifest"),
+    /**
+     * Resolving the running Minecraft version against the version ranges.
+     */
+    RESOLVE("resolve"),
+    /**
+     * Mounting the nested jars, or extracting them to a jar on disk, and verifying signed ones.
+     */
+    MOUNT("mount"),
+    /**
+     * Creating the mod file of the nested jars.
+     */
+    MOD_FILE("modFile");
+
+    private final String key;
+
+    StartupPhase(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The name of the phase in the timing summary
+     */
+    public String getKey() {
+        return key;
+    }
+}
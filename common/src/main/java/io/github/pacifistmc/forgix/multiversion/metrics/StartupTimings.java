@@ -0,0 +1,170 @@
+package io.github.pacifistmc.forgix.multiversion.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects how long a locator spends in every {@link StartupPhase} and how many bytes it processes there.
+ * Every phase is also emitted as a JFR event when JFR is available. Safe to use from several threads at once.
+ * <p>
+ * The time of a phase is summed over every thread it ran on, so with several discovery workers the phases add up to
+ * more than the wall time. The total is the wall time during which any phase was running instead.
+ * <p>
+ * <pre>{@code
+ * try (var phase = timings.start(StartupPhase.MOUNT, jarName)) {
+ *     ...
+ *     phase.addBytes(size);
+ * }
+ * }</pre>
+ */
+public class StartupTimings {
+    /**
+     * Timings that record nothing, for callers that don't report timings.
+     */
+    public static final StartupTimings NONE = new StartupTimings(null);
+    private static final Map<String, StartupTimings> PLATFORMS = new ConcurrentHashMap<>();
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private final String platform;
+    private final LongAdder[] nanos = adders();
+    private final LongAdder[] bytes = adders();
+    private final LongAdder[] counts = adders();
+    private int running; // Phases running right now on any thread, guarded by this
+    private long runningSince;
+    private long wallNanos;
+
+    private StartupTimings(String platform) {
+        this.platform = platform;
+    }
+
+    /**
+     * Gets the timings of the given platform, see {@link io.github.pacifistmc.forgix.multiversion.platform.services.IPlatformHelper#getStartupTimings()}.
+     *
+     * @param platform The platform name
+     * @return The timings, shared by every caller for the same platform
+     */
+    public static StartupTimings forPlatform(String platform) {
+        return PLATFORMS.computeIfAbsent(platform, StartupTimings::new);
+    }
+
+    /**
+     * Starts timing a phase, which ends when the returned phase is closed.
+     *
+     * @param phase   The phase
+     * @param subject What the phase is working on, usually a jar name
+     * @return The running phase
+     */
+    public Phase start(StartupPhase phase, Object subject) {
+        if (platform == null) return new Phase(phase, null, 0);
+        var event = JFR_AVAILABLE ? PhaseEvent.begin(platform, phase, String.valueOf(subject)) : null;
+        long start = System.nanoTime();
+        phaseStarted(start);
+        return new Phase(phase, event, start);
+    }
+
+    /**
+     * Times a phase that has nothing to record but its time, e.g. building a mod file.
+     *
+     * @param phase   The phase
+     * @param subject What the phase is working on, usually a jar name
+     * @param timed   What's done in the phase
+     * @return What the phase returned
+     */
+    public <T, E extends Exception> T time(StartupPhase phase, Object subject, Timed<T, E> timed) throws E {
+        var running = start(phase, subject);
+        try {
+            return timed.run();
+        } finally {
+            running.close();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Timed<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * A single line summary of every phase so far, e.g.
+     * {@code forgix-multiversion platform=forge selfJar.ms=3.10 selfJar.count=1 selfJar.bytes=5242880 ... total.ms=9.80}
+     *
+     * @return The summary
+     */
+    public String summary() {
+        var summary = new StringBuilder("forgix-multiversion platform=").append(platform);
+        for (var phase : StartupPhase.values()) {
+            long phaseNanos = nanos[phase.ordinal()].sum();
+            summary.append(' ').append(phase.getKey()).append(".ms=").append(millis(phaseNanos));
+            summary.append(' ').append(phase.getKey()).append(".count=").append(counts[phase.ordinal()].sum());
+            summary.append(' ').append(phase.getKey()).append(".bytes=").append(bytes[phase.ordinal()].sum());
+        }
+        synchronized (this) {
+            return summary.append(" total.ms=").append(millis(wallNanos)).toString();
+        }
+    }
+
+    private synchronized void phaseStarted(long now) {
+        if (running++ == 0) runningSince = now;
+    }
+
+    private synchronized void phaseEnded(long now) {
+        if (--running == 0) wallNanos += now - runningSince;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    private static LongAdder[] adders() {
+        var adders = new LongAdder[StartupPhase.values().length];
+        for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, StartupTimings.class.getClassLoader());
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * A running phase.
+     */
+    public final class Phase implements AutoCloseable {
+        private final StartupPhase phase;
+        private final Object event;
+        private final long start;
+        private long processedBytes;
+
+        private Phase(StartupPhase phase, Object event, long start) {
+            this.phase = phase;
+            this.event = event;
+            this.start = start;
+        }
+
+        /**
+         * Adds to the bytes processed in this phase.
+         *
+         * @param count The number of bytes
+         */
+        public void addBytes(long count) {
+            processedBytes += count;
+        }
+
+        @Override
+        public void close() {
+            if (platform == null) return;
+            long end = System.nanoTime();
+            phaseEnded(end);
+            nanos[phase.ordinal()].add(end - start);
+            bytes[phase.ordinal()].add(processedBytes);
+            counts[phase.ordinal()].increment();
+            if (event != null) PhaseEvent.commit(event, processedBytes);
+        }
+    }
+}
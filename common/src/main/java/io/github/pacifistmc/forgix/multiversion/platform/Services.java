@@ -18,8 +18,10 @@ public class Services {
     // manually by including a text file in META-INF/services named with the fully qualified class name of the service.
     // Inside the file you should write the fully qualified class name of the implementation to load for the platform. For
     // example our file on Forge points to ForgePlatformHelper while Fabric points to FabricPlatformHelper.
+    // We look the service up through our own class loader, as the locators run before the context class loader can see
+    // our jar.
     public static <T> T load(Class<T> clazz) {
-        return ServiceLoader.load(clazz)
+        return ServiceLoader.load(clazz, Services.class.getClassLoader())
                 .findFirst()
                 .orElseThrow(() -> new NullPointerException("Failed to load service for " + clazz.getName()));
     }
@@ -1,4 +1,45 @@
 package io.github.pacifistmc.forgix.multiversion.platform.services;
 
+import io.github.pacifistmc.forgix.multiversion.fs.NestedJarMounts;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+
 public interface IPlatformHelper {
-}
\ No newline at end of file
+    /**
+     * Gets the name of the current platform
+     *
+     * @return The name of the current platform.
+     */
+    String getPlatformName();
+
+    /**
+     * Logs an informational message through the platform's logger.
+     *
+     * @param message The message
+     */
+    void logInfo(String message);
+
+    /**
+     * Gets the startup timings of the locator on this platform, the same on every platform so they're comparable.
+     *
+     * @return The startup timings
+     */
+    default StartupTimings getStartupTimings() {
+        return StartupTimings.forPlatform(getPlatformName());
+    }
+
+    /**
+     * Logs the summary of the startup timings as a single line.
+     */
+    default void reportStartupTimings() {
+        logInfo(getStartupTimings().summary());
+    }
+
+    /**
+     * Gets the pool of nested jars mounted through the loader's file systems on this platform.
+     *
+     * @return The nested jar mounts
+     */
+    default NestedJarMounts getNestedJarMounts() {
+        return NestedJarMounts.forPlatform(getPlatformName());
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.pacifistmc.forgix.multiversion.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip archive out of entries copied from other archives exactly as they're stored, so nothing is inflated
+ * or deflated again. The CRC and sizes are taken from the source central directory, so the written local headers
+ * never need a data descriptor.
+ * <p>
+ * Every name is only written once; copying an entry whose name was already written is skipped.
+ */
+public final class RawZipWriter implements Closeable {
+    private static final int VERSION = 20; // 2.0, deflate
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(46).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final Set<String> names = new HashSet<>();
+    private long offset;
+    private int entryCount;
+    private boolean closed;
+
+    public RawZipWriter(OutputStream outputStream) {
+        this.channel = Channels.newChannel(outputStream);
+    }
+
+    /**
+     * Checks whether an entry with the given name was already written.
+     *
+     * @param name The entry name
+     * @return true if the name was already written, false otherwise
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Copies the entry from the source archive without recompressing it.
+     *
+     * @param source The archive the entry belongs to
+     * @param entry  The entry
+     * @return true if the entry was written, false if an entry with the same name was already written
+     */
+    public boolean copy(ZipIndex source, ZipIndex.Entry entry) throws IOException {
+        if (!names.add(entry.name())) return false;
+        if (offset > 0xFFFFFFFFL || entryCount == 0xFFFF) throw new ZipException("Archive too large, ZIP64 is not supported");
+
+        var name = entry.name().getBytes(StandardCharsets.UTF_8);
+        int flags = (entry.flags() & ~FLAG_DATA_DESCRIPTOR) | FLAG_UTF8;
+        var data = source.getRawData(entry);
+
+        // Local file header
+        header.clear();
+        header.putInt(0x04034b50).putShort((short) VERSION).putShort((short) flags).putShort((short) entry.method())
+                .putInt(entry.dosTime()).putInt((int) entry.crc()).putInt((int) entry.compressedSize()).putInt((int) entry.size())
+                .putShort((short) name.length).putShort((short) 0);
+        write(header.flip());
+        write(ByteBuffer.wrap(name));
+        write(data);
+
+        // Central directory header, written out once every entry is copied
+        header.clear();
+        header.putInt(0x02014b50).putShort((short) VERSION).putShort((short) VERSION).putShort((short) flags).putShort((short) entry.method())
+                .putInt(entry.dosTime()).putInt((int) entry.crc()).putInt((int) entry.compressedSize()).putInt((int) entry.size())
+                .putShort((short) name.length).putShort((short) 0).putShort((short) 0).putShort((short) 0).putShort((short) 0)
+                .putInt(0).putInt((int) offset);
+        centralDirectory.write(header.array(), 0, header.position());
+        centralDirectory.write(name);
+
+        offset += 30 + name.length + entry.compressedSize();
+        entryCount++;
+        return true;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (offset > 0xFFFFFFFFL) throw new ZipException("Archive too large, ZIP64 is not supported");
+            write(ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+            // End of central directory record
+            header.clear();
+            header.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) entryCount).putShort((short) entryCount)
+                    .putInt(centralDirectory.size()).putInt((int) offset).putShort((short) 0);
+            write(header.flip());
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.pacifistmc.forgix.multiversion.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of a zip archive built from its central directory.
+ * <p>
+ * Entries are located without reading the archive front to back, and their data can be accessed either still
+ * compressed (to copy it somewhere else as-is) or inflated. ZIP64 and encrypted archives are not supported, reading
+ * them fails with a {@link ZipException} so callers can fall back to {@link java.util.zip}.
+ */
+public final class ZipIndex {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private final ByteBuffer buffer;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+
+    private ZipIndex(ByteBuffer buffer, List<Entry> entries, Map<String, Entry> entriesByName) {
+        this.buffer = buffer;
+        this.entries = entries;
+        this.entriesByName = entriesByName;
+    }
+
+    /**
+     * A single entry of the central directory.
+     *
+     * @param name              The entry name
+     * @param method            The compression method, {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param flags             The general purpose flags
+     * @param dosTime           The last modification time and date in MS-DOS format
+     * @param crc               The CRC-32 of the uncompressed data
+     * @param compressedSize    The size of the data as stored in the archive
+     * @param size              The size of the uncompressed data
+     * @param localHeaderOffset The offset of the local file header in the archive
+     */
+    public record Entry(String name, int method, int flags, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return The last modification time in milliseconds since the epoch, in the local time zone like zip tools do
+         */
+        public long lastModifiedMillis() {
+            int time = dosTime & 0xFFFF;
+            int date = dosTime >>> 16;
+            try {
+                return LocalDateTime.of(((date >> 9) & 0x7F) + 1980, (date >> 5) & 0x0F, date & 0x1F,
+                                (time >> 11) & 0x1F, (time >> 5) & 0x3F, (time << 1) & 0x3E)
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Reads the central directory of the archive in the given buffer. The buffer is not copied, so it must not be
+     * modified while the index is in use.
+     *
+     * @param buffer The whole archive
+     * @return The index of the archive
+     * @throws ZipException If the archive is malformed or uses features that aren't supported
+     */
+    public static ZipIndex read(ByteBuffer buffer) throws ZipException {
+        buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        int end = findEndOfCentralDirectory(buffer);
+        int entryCount = Short.toUnsignedInt(buffer.getShort(end + 10));
+        long centralDirectorySize = Integer.toUnsignedLong(buffer.getInt(end + 12));
+        long centralDirectoryOffset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+        if (entryCount == 0xFFFF || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        if (centralDirectoryOffset + centralDirectorySize > end) throw new ZipException("Invalid central directory");
+
+        List<Entry> entries = new ArrayList<>(entryCount);
+        Map<String, Entry> entriesByName = new HashMap<>(entryCount * 2);
+        int position = (int) centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_SIZE > end || buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int flags = Short.toUnsignedInt(buffer.getShort(position + 8));
+            int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+            int dosTime = buffer.getInt(position + 12);
+            long crc = Integer.toUnsignedLong(buffer.getInt(position + 16));
+            long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+            long size = Integer.toUnsignedLong(buffer.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+
+            if ((flags & FLAG_ENCRYPTED) != 0) throw new ZipException("Encrypted entries are not supported");
+            if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) throw new ZipException("Unsupported compression method " + method);
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                throw new ZipException("ZIP64 entries are not supported");
+            }
+
+            var nameBytes = new byte[nameLength];
+            buffer.get(position + CENTRAL_HEADER_SIZE, nameBytes);
+            var entry = new Entry(new String(nameBytes, StandardCharsets.UTF_8), method, flags, dosTime, crc, compressedSize, size, localHeaderOffset);
+            entries.add(entry);
+            entriesByName.putIfAbsent(entry.name(), entry);
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        return new ZipIndex(buffer, Collections.unmodifiableList(entries), entriesByName);
+    }
+
+    /**
+     * Memory-maps the given archive and reads its central directory.
+     *
+     * @param file The archive
+     * @return The index of the archive
+     */
+    public static ZipIndex open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) throws ZipException {
+        int limit = Math.max(0, buffer.limit() - END_SIZE - 0xFFFF); // The archive comment is at most 65535 bytes
+        for (int position = buffer.limit() - END_SIZE; position >= limit; position--) {
+            if (buffer.getInt(position) == END_SIGNATURE) return position;
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Gets the entry with the given name, the first one if the archive contains duplicates.
+     *
+     * @param name The entry name
+     * @return The entry, or null if there is no such entry
+     */
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Gets the data of the entry exactly as it's stored in the archive, without inflating it.
+     *
+     * @param entry The entry
+     * @return A read-only buffer over the stored data
+     */
+    public ByteBuffer getRawData(Entry entry) throws ZipException {
+        long header = entry.localHeaderOffset();
+        if (header + LOCAL_HEADER_SIZE > buffer.limit() || buffer.getInt((int) header) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local file header for " + entry.name());
+        }
+        int nameLength = Short.toUnsignedInt(buffer.getShort((int) header + 26));
+        int extraLength = Short.toUnsignedInt(buffer.getShort((int) header + 28));
+        long start = header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        if (start + entry.compressedSize() > buffer.limit()) throw new ZipException("Truncated entry " + entry.name());
+        return buffer.slice((int) start, (int) entry.compressedSize()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Opens the uncompressed data of the entry.
+     *
+     * @param entry The entry
+     * @return An input stream over the uncompressed data
+     */
+    public InputStream getInputStream(Entry entry) throws ZipException {
+        InputStream raw = new ByteBufferInputStream(getRawData(entry));
+        if (entry.method() == ZipEntry.STORED) return raw;
+        var inflater = new Inflater(true);
+        return new InflaterInputStream(raw, inflater, (int) Math.max(512, Math.min(entry.compressedSize(), 64 * 1024))) {
+            private boolean closed;
+            private boolean eof;
+
+            @Override
+            protected void fill() throws IOException {
+                if (eof) throw new EOFException("Unexpected end of entry " + entry.name());
+                len = in.read(buf, 0, buf.length);
+                if (len == -1) { // The inflater may need one extra dummy byte in nowrap mode, same as ZipFile does
+                    buf[0] = 0;
+                    len = 1;
+                    eof = true;
+                }
+                inf.setInput(buf, 0, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                super.close();
+                inflater.end(); // Not ended by InflaterInputStream as we supplied it ourselves
+            }
+        };
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
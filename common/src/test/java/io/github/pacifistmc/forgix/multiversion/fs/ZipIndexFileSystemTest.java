@@ -0,0 +1,98 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import io.github.pacifistmc.forgix.multiversion.zip.ZipIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipIndexFileSystemTest {
+    @Test
+    void theFirstLayerWinsForEntriesInSeveralLayers() throws IOException {
+        var version = index("same.txt", "version", "version.txt", "version");
+        var shared = index("same.txt", "shared", "shared.txt", "shared");
+        try (var fileSystem = ZipIndexFileSystem.of("test", List.of(new ZipIndexFileSystem.Layer(version), new ZipIndexFileSystem.Layer(shared)))) {
+            var root = fileSystem.getRoot();
+            assertEquals("version", Files.readString(root.resolve("same.txt")));
+            assertEquals("version", Files.readString(root.resolve("version.txt")));
+            assertEquals("shared", Files.readString(root.resolve("shared.txt")));
+            assertEquals(List.of("same.txt", "shared.txt", "version.txt"), list(root));
+        }
+    }
+
+    @Test
+    void filteredEntriesFallThroughToTheNextLayer() throws IOException {
+        var version = index("same.txt", "version", "hidden.txt", "version");
+        var shared = index("same.txt", "shared");
+        var layers = List.of(new ZipIndexFileSystem.Layer(version, name -> !name.startsWith("same")), new ZipIndexFileSystem.Layer(shared));
+        try (var fileSystem = ZipIndexFileSystem.of("test", layers)) {
+            assertEquals("shared", Files.readString(fileSystem.getPath("/same.txt")));
+            assertEquals("version", Files.readString(fileSystem.getPath("/hidden.txt")));
+        }
+    }
+
+    @Test
+    void impliesDirectoriesMissingFromTheZip() throws IOException {
+        try (var fileSystem = ZipIndexFileSystem.of("test", List.of(new ZipIndexFileSystem.Layer(index("a/b/c.txt", "c", "a/d.txt", "d"))))) {
+            var root = fileSystem.getRoot();
+            assertTrue(Files.isDirectory(root.resolve("a")));
+            assertTrue(Files.isDirectory(root.resolve("a/b")));
+            assertTrue(Files.isRegularFile(root.resolve("a/b/c.txt")));
+            assertEquals(List.of("a"), list(root));
+            assertEquals(List.of("b", "d.txt"), list(root.resolve("a")));
+        }
+    }
+
+    @Test
+    void resolvesEntriesThroughDotDot() throws IOException {
+        try (var fileSystem = ZipIndexFileSystem.of("test", List.of(new ZipIndexFileSystem.Layer(index("a/b.txt", "b", "c.txt", "c"))))) {
+            var root = fileSystem.getRoot();
+            assertEquals("c", Files.readString(root.resolve("a/../c.txt")));
+            assertEquals("b", Files.readString(root.resolve("a/./../a/b.txt")));
+            assertEquals("c", Files.readString(root.resolve("../c.txt")));
+            assertThrows(NoSuchFileException.class, () -> Files.readString(root.resolve("a/c.txt")));
+        }
+    }
+
+    @Test
+    void isUnregisteredOnceClosed() throws IOException {
+        var fileSystem = ZipIndexFileSystem.of("test", List.of(new ZipIndexFileSystem.Layer(index("a.txt", "a"))));
+        var file = fileSystem.getRoot().resolve("a.txt");
+        var uri = file.toUri();
+        assertEquals(file, ZipIndexFileSystemProvider.INSTANCE.getPath(uri));
+        fileSystem.close();
+
+        assertFalse(fileSystem.isOpen());
+        assertThrows(ClosedFileSystemException.class, () -> Files.readString(file));
+        assertThrows(FileSystemNotFoundException.class, () -> ZipIndexFileSystemProvider.INSTANCE.getPath(uri));
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (var children = Files.list(directory)) {
+            return children.map(child -> child.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    static ZipIndex index(String... namesAndContents) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zos.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zos.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return ZipIndex.read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+}
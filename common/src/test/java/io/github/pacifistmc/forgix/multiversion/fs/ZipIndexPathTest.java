@@ -0,0 +1,117 @@
+package io.github.pacifistmc.forgix.multiversion.fs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.github.pacifistmc.forgix.multiversion.fs.ZipIndexFileSystemTest.index;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipIndexPathTest {
+    private final ZipIndexFileSystem fileSystem;
+
+    ZipIndexPathTest() throws IOException {
+        fileSystem = ZipIndexFileSystem.of("test", List.of(new ZipIndexFileSystem.Layer(index("a/b.txt", "b"))));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        fileSystem.close();
+    }
+
+    private Path path(String path) {
+        return fileSystem.getPath(path);
+    }
+
+    @Test
+    void dropsDuplicateAndTrailingSeparators() {
+        assertEquals("/a/b", path("/a//b/").toString());
+        assertEquals("a/b", path("a/b//").toString());
+        assertEquals("/", path("//").toString());
+        assertEquals(path("/a/b"), path("/a//b/"));
+    }
+
+    @Test
+    void splitsIntoNames() {
+        var path = path("/a/b/c");
+        assertTrue(path.isAbsolute());
+        assertEquals(3, path.getNameCount());
+        assertEquals(path("b"), path.getName(1));
+        assertEquals(path("c"), path.getFileName());
+        assertEquals(path("/a/b"), path.getParent());
+        assertEquals(path("b/c"), path.subpath(1, 3));
+        assertEquals(fileSystem.getRoot(), path("/a").getParent());
+        assertNull(path("a").getParent());
+
+        assertEquals(0, fileSystem.getRoot().getNameCount());
+        assertNull(fileSystem.getRoot().getFileName());
+        assertNull(fileSystem.getRoot().getParent());
+    }
+
+    @Test
+    void normalizesDotAndDotDot() {
+        assertEquals(path("/a/c"), path("/a/./b/../c").normalize());
+        assertEquals(path("/a"), path("/../a").normalize());
+        assertEquals(fileSystem.getRoot(), path("/a/../..").normalize());
+        assertEquals(path("../b"), path("a/../../b").normalize());
+        assertEquals(path("../.."), path("../a/../..").normalize());
+        assertEquals(path(""), path("a/..").normalize());
+        assertEquals(path("a/b"), path("./a/./b/.").normalize());
+    }
+
+    @Test
+    void resolvesAgainstOtherPaths() {
+        assertEquals(path("/a/b"), path("/a").resolve("b"));
+        assertEquals(path("/b"), path("/a").resolve("/b"));
+        assertEquals(path("/a"), path("/a").resolve(""));
+        assertEquals(path("b"), path("").resolve("b"));
+        assertEquals(path("/a/../b"), path("/a").resolve("../b"));
+        assertEquals(path("/a/c"), path("/a/b").resolveSibling("c"));
+    }
+
+    @Test
+    void relativizesBetweenPaths() {
+        assertEquals(path("../c/d"), path("/a/b").relativize(path("/a/c/d")));
+        assertEquals(path("a/b"), fileSystem.getRoot().relativize(path("/a/b")));
+        assertEquals(path("../.."), path("/a/b").relativize(fileSystem.getRoot()));
+        assertEquals(path(""), path("/a/b").relativize(path("/a/b")));
+        assertEquals(path("c"), path("a/b").relativize(path("a/b/c")));
+        assertEquals(path("../c"), path("/a/./b/../d").relativize(path("/a/c")));
+    }
+
+    @Test
+    void relativizeThenResolveGivesTheOtherPathBack() {
+        var base = path("/a/b/c");
+        for (var other : List.of("/a/b/c/d", "/a/x", "/", "/x/y/z", "/a/b/c")) {
+            assertEquals(path(other), base.resolve(base.relativize(path(other))).normalize());
+        }
+    }
+
+    @Test
+    void rejectsRelativizingAcrossAbsoluteAndRelative() {
+        assertThrows(IllegalArgumentException.class, () -> path("/a").relativize(path("b")));
+        assertThrows(IllegalArgumentException.class, () -> path("a").relativize(path("/b")));
+    }
+
+    @Test
+    void comparesPrefixesAndSuffixesByName() {
+        var path = path("/a/b/c");
+        assertTrue(path.startsWith(path("/a/b")));
+        assertFalse(path.startsWith(path("/a/bc")));
+        assertFalse(path.startsWith(path("a/b")));
+        assertTrue(path.endsWith(path("b/c")));
+        assertFalse(path.endsWith(path("/b/c")));
+        assertTrue(path.endsWith(path("/a/b/c")));
+    }
+
+    @Test
+    void relativePathsPointIntoTheRoot() throws IOException {
+        assertEquals("a/b.txt", ((ZipIndexPath) path("a/b.txt")).entryName());
+        assertEquals("a/b.txt", ((ZipIndexPath) path("/a/../a/./b.txt")).entryName());
+        assertEquals("", ((ZipIndexPath) path("/..")).entryName());
+        assertEquals(path("/a/b.txt"), path("a/c/../b.txt").toRealPath());
+    }
+}
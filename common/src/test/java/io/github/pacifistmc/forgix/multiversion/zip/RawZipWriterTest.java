@@ -0,0 +1,94 @@
+package io.github.pacifistmc.forgix.multiversion.zip;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipFile;
+
+import static io.github.pacifistmc.forgix.multiversion.zip.ZipIndexTest.zip;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawZipWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void copiedEntriesReadBackWithZipFile() throws IOException {
+        var source = ZipIndex.read(ByteBuffer.wrap(zip("dir/", null, "dir/stored.txt", "stored", "dir/deflated.txt", "deflated ".repeat(100))));
+        var jar = tempDir.resolve("copy.jar");
+        try (var writer = new RawZipWriter(Files.newOutputStream(jar))) {
+            for (var entry : source.entries()) assertTrue(writer.copy(source, entry));
+        }
+
+        try (var zip = new ZipFile(jar.toFile())) {
+            assertEquals(3, zip.size());
+            assertTrue(zip.getEntry("dir/").isDirectory());
+            try (var in = zip.getInputStream(zip.getEntry("dir/stored.txt"))) {
+                assertEquals("stored", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            try (var in = zip.getInputStream(zip.getEntry("dir/deflated.txt"))) {
+                assertEquals("deflated ".repeat(100), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // Deflated entries written by ZipOutputStream carry a data descriptor, the copy has the sizes in its local header
+    @Test
+    void copiesEntriesAsTheyAreStored() throws IOException {
+        var source = ZipIndex.read(ByteBuffer.wrap(zip("stored.txt", "stored", "deflated.txt", "deflated ".repeat(100))));
+        var bytes = new ByteArrayOutputStream();
+        try (var writer = new RawZipWriter(bytes)) {
+            for (var entry : source.entries()) writer.copy(source, entry);
+        }
+
+        var copy = ZipIndex.read(ByteBuffer.wrap(bytes.toByteArray()));
+        for (var entry : source.entries()) {
+            var copied = copy.getEntry(entry.name());
+            assertEquals(entry.method(), copied.method());
+            assertEquals(entry.crc(), copied.crc());
+            assertEquals(entry.size(), copied.size());
+            assertEquals(entry.compressedSize(), copied.compressedSize());
+            assertEquals(entry.dosTime(), copied.dosTime());
+            assertEquals(source.getRawData(entry), copy.getRawData(copied));
+            assertEquals(0, copied.flags() & 0x8);
+        }
+    }
+
+    @Test
+    void writesEveryNameOnce() throws IOException {
+        var first = ZipIndex.read(ByteBuffer.wrap(zip("same.txt", "first", "only-first.txt", "first")));
+        var second = ZipIndex.read(ByteBuffer.wrap(zip("same.txt", "second", "only-second.txt", "second")));
+        var bytes = new ByteArrayOutputStream();
+        try (var writer = new RawZipWriter(bytes)) {
+            for (var entry : first.entries()) writer.copy(first, entry);
+            assertTrue(writer.contains("same.txt"));
+            assertFalse(writer.contains("only-second.txt"));
+            assertFalse(writer.copy(second, second.getEntry("same.txt")));
+            assertTrue(writer.copy(second, second.getEntry("only-second.txt")));
+        }
+
+        var copy = ZipIndex.read(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(3, copy.entries().size());
+        try (var in = copy.getInputStream(copy.getEntry("same.txt"))) {
+            assertEquals("first", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void writesAnEmptyArchive() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        new RawZipWriter(bytes).close();
+
+        assertEquals(0, ZipIndex.read(ByteBuffer.wrap(bytes.toByteArray())).entries().size());
+        var jar = Files.write(tempDir.resolve("empty.jar"), bytes.toByteArray());
+        try (var zip = new ZipFile(jar.toFile())) {
+            assertEquals(0, zip.size());
+        }
+    }
+}
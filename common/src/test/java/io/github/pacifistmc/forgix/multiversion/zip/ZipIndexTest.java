@@ -0,0 +1,147 @@
+package io.github.pacifistmc.forgix.multiversion.zip;
+
+import io.github.pacifistmc.forgix.multiversion.Forgix;
+import io.github.pacifistmc.forgix.multiversion.discovery.ManifestProbe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipIndexTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsEveryEntryOfTheCentralDirectory() throws IOException {
+        var index = ZipIndex.read(ByteBuffer.wrap(zip("a/", null, "a/stored.txt", "stored", "a/deflated.txt", "deflated ".repeat(100))));
+
+        assertEquals(3, index.entries().size());
+        assertTrue(index.getEntry("a/").isDirectory());
+
+        var stored = index.getEntry("a/stored.txt");
+        assertEquals(ZipEntry.STORED, stored.method());
+        assertEquals(6, stored.size());
+        assertEquals(crc("stored"), stored.crc());
+
+        var deflated = index.getEntry("a/deflated.txt");
+        assertEquals(ZipEntry.DEFLATED, deflated.method());
+        assertEquals(900, deflated.size());
+        assertTrue(deflated.compressedSize() < deflated.size());
+        assertNull(index.getEntry("a/missing.txt"));
+    }
+
+    @Test
+    void servesStoredAndInflatedData() throws IOException {
+        var index = ZipIndex.read(ByteBuffer.wrap(zip("stored.txt", "stored", "deflated.txt", "deflated ".repeat(100))));
+
+        var stored = index.getEntry("stored.txt");
+        assertEquals("stored", StandardCharsets.UTF_8.decode(index.getRawData(stored)).toString());
+        try (var in = index.getInputStream(stored)) {
+            assertEquals("stored", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        var deflated = index.getEntry("deflated.txt");
+        assertEquals(deflated.compressedSize(), index.getRawData(deflated).remaining());
+        try (var in = index.getInputStream(deflated)) {
+            assertEquals("deflated ".repeat(100), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void findsTheCentralDirectoryBehindAnArchiveComment() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bytes)) {
+            zos.setComment("comment".repeat(100));
+            zos.putNextEntry(new ZipEntry("file.txt"));
+            zos.write("file".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertNotNull(ZipIndex.read(ByteBuffer.wrap(bytes.toByteArray())).getEntry("file.txt"));
+    }
+
+    @Test
+    void opensAMemoryMappedArchive() throws IOException {
+        var jar = Files.write(tempDir.resolve("mapped.jar"), zip("file.txt", "file"));
+
+        var index = ZipIndex.open(jar);
+        try (var in = index.getInputStream(index.getEntry("file.txt"))) {
+            assertEquals("file", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void rejectsWhatIsNotAZip() {
+        assertThrows(ZipException.class, () -> ZipIndex.read(ByteBuffer.wrap("not a zip".repeat(10).getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void rejectsEncryptedEntries() throws IOException {
+        var bytes = zip("secret.txt", "secret");
+        var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int centralDirectory = buffer.getInt(bytes.length - 22 + 16);
+        buffer.putShort(centralDirectory + 8, (short) (buffer.getShort(centralDirectory + 8) | 0x1));
+
+        var exception = assertThrows(ZipException.class, () -> ZipIndex.read(ByteBuffer.wrap(bytes)));
+        assertTrue(exception.getMessage().contains("Encrypted"));
+    }
+
+    // More entries than the end of central directory record can count, so the archive is written as ZIP64
+    @Test
+    void rejectsZip64SoCallersFallBackToZipFile() throws IOException {
+        var jar = tempDir.resolve("zip64.jar");
+        try (var zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zos.putNextEntry(new ZipEntry(Forgix.MULTI_VERSION_LOCATION));
+            zos.write("{}".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 0x10000; i++) zos.putNextEntry(new ZipEntry("entries/" + i));
+        }
+
+        var exception = assertThrows(ZipException.class, () -> ZipIndex.open(jar));
+        assertTrue(exception.getMessage().contains("ZIP64"));
+
+        var resources = ManifestProbe.probe(jar);
+        assertNotNull(resources);
+        try (var in = resources.open(Forgix.MULTI_VERSION_LOCATION)) {
+            assertEquals("{}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(new Forgix.RecordedEntry(2, crc("{}")), resources.recorded(Forgix.MULTI_VERSION_LOCATION));
+    }
+
+    // Files whose name starts with "deflated" are deflated, the others stored; a null content makes a directory
+    static byte[] zip(String... namesAndContents) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var zos = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                var name = namesAndContents[i];
+                var content = namesAndContents[i + 1] == null ? new byte[0] : namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8);
+                var entry = new ZipEntry(name);
+                if (!name.endsWith("/") && !name.substring(name.lastIndexOf('/') + 1).startsWith("deflated")) {
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.length);
+                    entry.setCompressedSize(content.length);
+                    entry.setCrc(crc(namesAndContents[i + 1] == null ? "" : namesAndContents[i + 1]));
+                }
+                zos.putNextEntry(entry);
+                zos.write(content);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static long crc(String content) {
+        var crc = new CRC32();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -1,73 +1,114 @@
 package io.github.pacifistmc.forgix.multiversion;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.mojang.logging.LogUtils;
 import cpw.mods.jarhandling.SecureJar;
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.discovery.ManifestProbe;
+import io.github.pacifistmc.forgix.multiversion.discovery.MultiversionDiscovery;
+import io.github.pacifistmc.forgix.multiversion.fs.NestedJarMounter;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupPhase;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+import io.github.pacifistmc.forgix.multiversion.platform.Services;
 import net.minecraftforge.fml.loading.FMLLoader;
+import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.fml.loading.moddiscovery.*;
 import net.minecraftforge.forgespi.locating.IDependencyLocator;
 import net.minecraftforge.forgespi.locating.IModFile;
 import net.minecraftforge.forgespi.locating.ModFileLoadingException;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Supplier;
 
 public class ForgeMultiversionLocator extends AbstractModProvider implements IDependencyLocator {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final String minecraftVersion = FMLLoader.versionInfo().mcVersion();
+    private static final StartupTimings timings = Services.PLATFORM.getStartupTimings();
+    private static final ExtractionCache cache = new ExtractionCache(FMLPaths.MODSDIR.get().resolve(".forgix-multiversion-jars"), ExtractionCache.DEFAULT_MAX_SIZE);
+    private static final NestedJarMounter mounter = new NestedJarMounter(Services.PLATFORM.getNestedJarMounts(),
+            (uri, nestedJar) -> FileSystems.newFileSystem(uri, ImmutableMap.of("packagePath", nestedJar)), cache, LOGGER::debug);
 
     @Override
     public List<IModFile> scanMods(Iterable<IModFile> loadedMods) {
+        var modFiles = MultiversionDiscovery.resolveAll(findMultiversionMods(loadedMods), this::resolveModFile);
+        if (Files.isDirectory(cache.getDirectory())) cache.evictInBackground(); // Everything this boot used was just touched, so it's kept
+        Services.PLATFORM.reportStartupTimings();
+        return modFiles;
+    }
+
+    /**
+     * A jar that has a multiversion manifest. The mod file is only built when a version matches, as building one
+     * scans the whole jar.
+     */
+    protected record Candidate(Path path, Forgix.ResourceOpener resources, Supplier<IModFile> modFile) { }
+
+    // Our own jar and every loaded mod that was packaged with Forgix, each only once and only if no other Forgix jar's
+    // locator has it already
+    private List<Candidate> findMultiversionMods(Iterable<IModFile> loadedMods) {
+        Map<Path, Candidate> candidates = new LinkedHashMap<>();
         try {
-            SecureJar secureJar = SecureJar.from(Path.of(ForgeMultiversionLocator.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
-            IModFile modFile = new ModFile(secureJar, this, ModFileParser::modsTomlParser);
-            return loadResourceFromModFile(modFile, Forgix.MULTI_VERSION_LOCATION)
-                    .map(inputStream -> {
-                        var forgix = Forgix.getForgixVersionJson(inputStream);
-                        if (forgix == null) return List.<IModFile>of();
-                        var versionPath = forgix.getPathForVersion(minecraftVersion);
-                        if (versionPath == null) return List.<IModFile>of();
-                        return loadModFileFrom(modFile, versionPath, forgix.getSharedLibrary())
-                                .map(List::of)
-                                .orElse(List.of());
-                    })
-                    .orElse(List.of());
-        } catch (URISyntaxException e) {
+            var selfPath = Path.of(ForgeMultiversionLocator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            try (var phase = timings.start(StartupPhase.SELF_JAR, selfPath.getFileName())) {
+                var resources = ManifestProbe.probe(selfPath);
+                if (resources != null) {
+                    Supplier<IModFile> modFile = Suppliers.memoize(() -> new ModFile(SecureJar.from(selfPath), this, ModFileParser::modsTomlParser));
+                    candidates.put(selfPath.toAbsolutePath().normalize(), new Candidate(selfPath, resources, modFile));
+                }
+                if (Files.isRegularFile(selfPath)) phase.addBytes(Files.size(selfPath));
+            }
+        } catch (URISyntaxException | IOException e) {
             throw new RuntimeException(e);
         }
+
+        for (var modFile : loadedMods) {
+            if (!Files.exists(modFile.findResource(Forgix.MULTI_VERSION_LOCATION))) continue;
+            var path = modFile.getFilePath();
+            candidates.putIfAbsent(path.toAbsolutePath().normalize(), new Candidate(path, resource -> loadResourceFromModFile(modFile, resource).orElse(null), () -> modFile));
+        }
+        // Every other Forgix jar's locator sees the same mods, whoever claims a mod first resolves it
+        candidates.keySet().removeIf(path -> {
+            if (MultiversionDiscovery.claim(path)) return false;
+            LOGGER.debug("{} is resolved by the locator of another Forgix jar", path.getFileName());
+            return true;
+        });
+        return new ArrayList<>(candidates.values());
+    }
+
+    protected Optional<IModFile> resolveModFile(Candidate candidate) {
+        try {
+            var selection = Forgix.selectVersion(candidate.path(), candidate.resources(), minecraftVersion, timings);
+            if (selection == null) return Optional.empty();
+            return loadModFileFrom(candidate.modFile().get(), selection.versionPath(), selection.sharedLibrary());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     // Code copied from forg themselves 😎 (copied as I don't want to rely on forge too much)
     // It's from JarInJarDependencyLocator but modified to fit our needs
 
-    @SuppressWarnings("resource") // Don't close the file system as it's used somewhere else internally by forg
     protected Optional<IModFile> loadModFileFrom(IModFile file, String versionPath, String sharedLibraryPath) {
+        NestedJarMounter.Mounted mounted = null;
         try {
-            List<Path> jarPaths = new ArrayList<>();
-
-            var versionPathInModFile = file.findResource(versionPath);
-            var versionZipFS = FileSystems.newFileSystem(
-                    new URI("jij:" + (versionPathInModFile.toAbsolutePath().toUri().getRawSchemeSpecificPart())).normalize(),
-                    ImmutableMap.of("packagePath", versionPathInModFile)
-            );
-            jarPaths.add(versionZipFS.getPath("/"));
-
-            if (sharedLibraryPath != null) {
-                var sharedLibraryPathInModFile = file.findResource(sharedLibraryPath);
-                var sharedLibraryZipFS = FileSystems.newFileSystem(
-                        new URI("jij:" + (sharedLibraryPathInModFile.toAbsolutePath().toUri().getRawSchemeSpecificPart())).normalize(),
-                        ImmutableMap.of("packagePath", sharedLibraryPathInModFile)
-                );
-                jarPaths.add(sharedLibraryZipFS.getPath("/"));
+            try (var phase = timings.start(StartupPhase.MOUNT, versionPath)) {
+                mounted = mounter.mount(file.getFilePath(), versionPath, sharedLibraryPath, file::findResource, phase);
             }
-            return Optional.of(new ModFile(SecureJar.from(jarPaths.toArray(Path[]::new)), this, ModFileParser::modsTomlParser));
+
+            var nestedJars = mounted;
+            return timings.time(StartupPhase.MOD_FILE, versionPath, () -> {
+                var modFile = new ModFile(SecureJar.from(nestedJars.roots().toArray(Path[]::new)), this, ModFileParser::modsTomlParser);
+                nestedJars.bindTo(modFile); // The mounts stay open as long as forg keeps the mod file
+                return Optional.of(modFile);
+            });
         } catch (Exception e) {
+            if (mounted != null) mounted.release();
             LOGGER.error("Failed to load mod file {} from {}", versionPath, file.getFileName());
             var exception = new ModFileLoadingException("Failed to load mod file " + file.getFileName());
             exception.initCause(e);
@@ -0,0 +1,19 @@
+package io.github.pacifistmc.forgix.multiversion.platform;
+
+import com.mojang.logging.LogUtils;
+import io.github.pacifistmc.forgix.multiversion.platform.services.IPlatformHelper;
+import org.slf4j.Logger;
+
+public class ForgePlatformHelper implements IPlatformHelper {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    @Override
+    public String getPlatformName() {
+        return "forge";
+    }
+
+    @Override
+    public void logInfo(String message) {
+        LOGGER.info(message);
+    }
+}
@@ -1,22 +1,36 @@
 package io.github.pacifistmc.forgix.multiversion;
 
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.fs.StoredNestedJars;
+import io.github.pacifistmc.forgix.multiversion.fs.ZipIndexFileSystem;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupPhase;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+import io.github.pacifistmc.forgix.multiversion.platform.Services;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.fml.loading.moddiscovery.AbstractJarFileLocator;
 import net.minecraftforge.fml.loading.moddiscovery.ModFile;
 import net.minecraftforge.fml.loading.moddiscovery.ModFileParser;
 import net.minecraftforge.forgespi.locating.IModFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipException;
 
 // I hate the code in this file, please someone figure out a way to load nested jar mods for 1.16.5 and below
 // Or a good way of multiversion mods
 public class ForgeMultiversionLocator extends AbstractJarFileLocator {
     private static final String minecraftVersion;
     private static final Path tempDir = FMLPaths.MODSDIR.get().resolve(".forgix-multiversion-jars");
+    private static final ExtractionCache cache = new ExtractionCache(tempDir, ExtractionCache.DEFAULT_MAX_SIZE);
+    private static final StartupTimings timings = Services.PLATFORM.getStartupTimings();
+    private static final CompletableFuture<Extraction> extraction;
 
     static {
         try {
@@ -27,49 +41,138 @@ public class ForgeMultiversionLocator extends AbstractJarFileLocator {
             throw new RuntimeException(e);
         }
 
-        if (Files.exists(tempDir)) deleteDirectory(tempDir);
-        createTemporaryDirectory(tempDir);
+        // The locator is loaded well before FML gets to scanning, so the extraction overlaps with the other locators
+        extraction = prefetch();
+    }
+
+    // The version jar and shared library merged, either in memory or extracted to a jar; the version path is kept for the timings
+    private record Extraction(String versionPath, Path jar) { }
+
+    private static CompletableFuture<Extraction> prefetch() {
+        var contextClassLoader = Thread.currentThread().getContextClassLoader();
+        var future = new CompletableFuture<Extraction>();
+        var thread = new Thread(() -> {
+            try {
+                future.complete(extract());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, "Forgix Multiversion prefetch");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(contextClassLoader);
+        thread.start();
+        return future;
+    }
+
+    // Returns null if no version matches
+    private static Extraction extract() throws IOException {
+        var selfJar = selfJar();
+        Forgix.ResourceOpener resources = path -> ForgeMultiversionLocator.class.getResourceAsStream("/" + path);
+        var selection = Forgix.selectVersion(selfJar, resources, minecraftVersion, timings);
+        if (selection == null) return null;
+        var versionPath = selection.versionPath();
+        var sharedLibraryPath = selection.sharedLibrary();
+
+        try (var phase = timings.start(StartupPhase.MOUNT, versionPath)) {
+            // Merge the nested jars in memory, reading them straight from our jar, so nothing is written to disk
+            try {
+                var fileSystem = Forgix.mountNestedJars(resources, StoredNestedJars.mapModJar(selfJar), versionPath, sharedLibraryPath);
+                if (Files.isDirectory(tempDir)) cache.evictInBackground(); // Still trim jars extracted by earlier boots
+                return new Extraction(versionPath, fileSystem.getPath("/" + versionPath.substring(versionPath.lastIndexOf('/') + 1)));
+            } catch (ZipException e) {
+                // Fall back to extracting for nested jars the in-memory merge can't read (e.g. ZIP64)
+            }
+
+            createCacheDirectory(tempDir);
+            // Reuse the jar extracted by a previous boot if nothing it's made from has changed
+            var key = cacheKey(versionPath, sharedLibraryPath);
+            var outputJarPath = cache.getOrCreate(key, path -> Forgix.extractNestedJar(versionPath, sharedLibraryPath, path));
+            cache.evictInBackground(outputJarPath);
+            phase.addBytes(Files.size(outputJarPath));
+            return new Extraction(versionPath, outputJarPath);
+        }
     }
 
     @Override
     public List<IModFile> scanMods() {
-        try (var inputStream = ForgeMultiversionLocator.class.getResourceAsStream("/" + Forgix.MULTI_VERSION_LOCATION)) {
-            var forgix = Forgix.getForgixVersionJson(inputStream);
-            if (forgix == null) return List.of();
-            var versionPath = forgix.getPathForVersion(minecraftVersion);
-            if (versionPath == null) return List.of();
-
-            // Create a valid filename from the path
-            Path outputJarPath = tempDir.resolve(UUID.randomUUID() + "-" + new File(versionPath).getName());
-
-            Forgix.extractNestedJar(versionPath, forgix.getSharedLibrary(), outputJarPath);
-            var modFile = new ModFile(outputJarPath, this, ModFileParser::modsTomlParser);
-            modJars.put(modFile, createFileSystem(modFile));
-            return List.of(modFile);
+        try {
+            var extracted = awaitExtraction();
+            if (extracted == null) return List.of();
+
+            return timings.time(StartupPhase.MOD_FILE, extracted.versionPath(), () -> {
+                var modFile = new ModFile(extracted.jar(), this, ModFileParser::modsTomlParser);
+                modJars.put(modFile, createFileSystem(modFile));
+                return List.of(modFile);
+            });
+        } finally {
+            Services.PLATFORM.reportStartupTimings();
+        }
+    }
+
+    // Rethrows whatever the prefetch failed with on the scanning thread, like the extraction had run right here
+    private static Extraction awaitExtraction() {
+        try {
+            return extraction.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new RuntimeException("Failed to scan mods", cause);
+        }
+    }
+
+    // Merged nested jars are already a file system, and only exist in memory
+    @Override
+    protected FileSystem createFileSystem(IModFile modFile) {
+        var fileSystem = modFile.getFilePath().getFileSystem();
+        if (fileSystem instanceof ZipIndexFileSystem) return fileSystem;
+        return super.createFileSystem(modFile);
+    }
+
+    @Override
+    public Optional<Manifest> findManifest(Path file) {
+        if (!(file.getFileSystem() instanceof ZipIndexFileSystem)) return super.findManifest(file);
+        try (var inputStream = Files.newInputStream(file.getFileSystem().getPath(JarFile.MANIFEST_NAME))) {
+            return Optional.of(new Manifest(inputStream));
         } catch (IOException e) {
-            throw new RuntimeException("Failed to scan mods", e);
+            return Optional.empty();
         }
     }
 
-    private static void createTemporaryDirectory(Path directory) {
+    // The jar we're loaded from, or null if it's not a plain jar file (e.g. in a dev environment)
+    private static Path selfJar() {
         try {
-            Files.createDirectories(directory);
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> { // File.deleteOnExit() is not reliable, so we use a shutdown hook instead
-                deleteDirectory(directory);
-            }));
-            Files.setAttribute(directory, "dos:hidden", true);
-        } catch (IOException ignored) { }
+            var jar = Path.of(ForgeMultiversionLocator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return Files.isRegularFile(jar) ? jar : null;
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    private static void deleteDirectory(Path directory) {
-        try (var walk = Files.walk(directory)) {
-            walk.sorted(Comparator.reverseOrder())
-                    .forEach(path -> {
-                        try {
-                            Files.delete(path);
-                        } catch (IOException ignored) { }
-                    });
-        } catch (IOException ignored) { }
+    private static String cacheKey(String versionPath, String sharedLibraryPath) throws IOException {
+        var outerJar = selfJar();
+        if (outerJar != null) return ExtractionCache.key(outerJar, versionPath, sharedLibraryPath);
+
+        // Fall back to hashing the nested jars themselves
+        List<InputStream> sources = new ArrayList<>();
+        try {
+            for (var path : new String[] { versionPath, sharedLibraryPath }) {
+                if (path == null) continue;
+                var inputStream = ForgeMultiversionLocator.class.getResourceAsStream("/" + path);
+                if (inputStream == null) throw new IOException("Could not find " + path + " in jar");
+                sources.add(inputStream);
+            }
+            return ExtractionCache.key(sources, versionPath, sharedLibraryPath);
+        } finally {
+            for (var inputStream : sources) inputStream.close();
+        }
+    }
+
+    private static void createCacheDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Files.setAttribute(directory, "dos:hidden", true);
+        } catch (IOException | UnsupportedOperationException ignored) { }
     }
 
     @Override
@@ -0,0 +1,19 @@
+package io.github.pacifistmc.forgix.multiversion.platform;
+
+import io.github.pacifistmc.forgix.multiversion.platform.services.IPlatformHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class ForgePlatformHelper implements IPlatformHelper {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    @Override
+    public String getPlatformName() {
+        return "forge_1_16";
+    }
+
+    @Override
+    public void logInfo(String message) {
+        LOGGER.info(message);
+    }
+}
@@ -1,79 +1,138 @@
 package io.github.pacifistmc.forgix.multiversion;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.mojang.logging.LogUtils;
 import cpw.mods.jarhandling.JarContents;
 import cpw.mods.jarhandling.SecureJar;
+import io.github.pacifistmc.forgix.multiversion.cache.ExtractionCache;
+import io.github.pacifistmc.forgix.multiversion.discovery.ManifestProbe;
+import io.github.pacifistmc.forgix.multiversion.discovery.MultiversionDiscovery;
+import io.github.pacifistmc.forgix.multiversion.fs.NestedJarMounter;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupPhase;
+import io.github.pacifistmc.forgix.multiversion.metrics.StartupTimings;
+import io.github.pacifistmc.forgix.multiversion.platform.Services;
 import net.neoforged.fml.loading.FMLLoader;
+import net.neoforged.fml.loading.FMLPaths;
 import net.neoforged.fml.loading.moddiscovery.readers.JarModsDotTomlModFileReader;
 import net.neoforged.neoforgespi.locating.*;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class NeoForgeMultiversionLocator implements IDependencyLocator {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final String minecraftVersion = FMLLoader.versionInfo().mcVersion();
+    private static final StartupTimings timings = Services.PLATFORM.getStartupTimings();
+    private static final ExtractionCache cache = new ExtractionCache(FMLPaths.MODSDIR.get().resolve(".forgix-multiversion-jars"), ExtractionCache.DEFAULT_MAX_SIZE);
+    private static final NestedJarMounter mounter = new NestedJarMounter(Services.PLATFORM.getNestedJarMounts(),
+            (uri, nestedJar) -> FileSystems.newFileSystem(uri, ImmutableMap.of("packagePath", nestedJar)), cache, LOGGER::debug);
 
     @Override
     public void scanMods(List<IModFile> loadedMods, IDiscoveryPipeline pipeline) {
+        // Mounting happens concurrently, the pipeline isn't thread-safe so it's only fed from this thread, in order
+        MultiversionDiscovery.resolveAll(findMultiversionMods(loadedMods), this::resolveNestedJar)
+                .forEach(nestedJar -> loadModFileFrom(nestedJar, pipeline).ifPresent(pipeline::addModFile));
+        if (Files.isDirectory(cache.getDirectory())) cache.evictInBackground(); // Everything this boot used was just touched, so it's kept
+        Services.PLATFORM.reportStartupTimings();
+    }
+
+    /**
+     * A jar that has a multiversion manifest. The mod file is only built when a version matches, as building one
+     * scans the whole jar.
+     */
+    protected record Candidate(Path path, Forgix.ResourceOpener resources, Supplier<IModFile> modFile) { }
+
+    // Our own jar and every loaded mod that was packaged with Forgix, each only once and only if no other Forgix jar's
+    // locator has it already
+    private List<Candidate> findMultiversionMods(List<IModFile> loadedMods) {
+        Map<Path, Candidate> candidates = new LinkedHashMap<>();
         try {
-            SecureJar secureJar = SecureJar.from(Path.of(NeoForgeMultiversionLocator.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
-            IModFile modFile = IModFile.create(secureJar, JarModsDotTomlModFileReader::manifestParser);
-            loadResourceFromModFile(modFile, Forgix.MULTI_VERSION_LOCATION).ifPresent(inputStream -> {
-                var forgix = Forgix.getForgixVersionJson(inputStream);
-                if (forgix == null) return;
-                var versionPath = forgix.getPathForVersion(minecraftVersion);
-                if (versionPath == null) return;
-                loadModFileFrom(modFile, versionPath, forgix.getSharedLibrary(), pipeline).ifPresent(pipeline::addModFile);
-            });
-        } catch (URISyntaxException e) {
+            var selfPath = Path.of(NeoForgeMultiversionLocator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            try (var phase = timings.start(StartupPhase.SELF_JAR, selfPath.getFileName())) {
+                var resources = ManifestProbe.probe(selfPath);
+                if (resources != null) {
+                    Supplier<IModFile> modFile = Suppliers.memoize(() -> IModFile.create(SecureJar.from(selfPath), JarModsDotTomlModFileReader::manifestParser));
+                    candidates.put(selfPath.toAbsolutePath().normalize(), new Candidate(selfPath, resources, modFile));
+                }
+                if (Files.isRegularFile(selfPath)) phase.addBytes(Files.size(selfPath));
+            }
+        } catch (URISyntaxException | IOException e) {
             throw new RuntimeException(e);
         }
+
+        for (var modFile : loadedMods) {
+            if (!Files.exists(modFile.findResource(Forgix.MULTI_VERSION_LOCATION))) continue;
+            var path = modFile.getFilePath();
+            candidates.putIfAbsent(path.toAbsolutePath().normalize(), new Candidate(path, resource -> loadResourceFromModFile(modFile, resource).orElse(null), () -> modFile));
+        }
+        // Every other Forgix jar's locator sees the same mods, whoever claims a mod first resolves it
+        candidates.keySet().removeIf(path -> {
+            if (MultiversionDiscovery.claim(path)) return false;
+            LOGGER.debug("{} is resolved by the locator of another Forgix jar", path.getFileName());
+            return true;
+        });
+        return new ArrayList<>(candidates.values());
     }
 
-    // Code copied from forg themselves 😎
-    // It's from JarInJarDependencyLocator but modified to fit our needs
+    protected record NestedJar(IModFile parent, String versionPath, NestedJarMounter.Mounted mounted) { }
 
-    @SuppressWarnings("resource") // Don't close the file system as it's used somewhere else internally by forg
-    protected Optional<IModFile> loadModFileFrom(IModFile file, String versionPath, String sharedLibraryPath, IDiscoveryPipeline pipeline) {
+    protected Optional<NestedJar> resolveNestedJar(Candidate candidate) {
         try {
-            List<Path> jarPaths = new ArrayList<>();
+            var selection = Forgix.selectVersion(candidate.path(), candidate.resources(), minecraftVersion, timings);
+            if (selection == null) return Optional.empty();
+            var modFile = candidate.modFile().get();
+            var mounted = mountNestedJars(modFile, selection.versionPath(), selection.sharedLibrary());
+            return Optional.of(new NestedJar(modFile, selection.versionPath(), mounted));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            var versionPathInModFile = file.findResource(versionPath);
-            var versionZipFS = FileSystems.newFileSystem(
-                    new URI("jij:" + (versionPathInModFile.toAbsolutePath().toUri().getRawSchemeSpecificPart())).normalize(),
-                    ImmutableMap.of("packagePath", versionPathInModFile)
-            );
-            jarPaths.add(versionZipFS.getPath("/"));
+    // Code copied from forg themselves 😎
+    // It's from JarInJarDependencyLocator but modified to fit our needs
 
-            if (sharedLibraryPath != null) {
-                var sharedLibraryPathInModFile = file.findResource(sharedLibraryPath);
-                var sharedLibraryZipFS = FileSystems.newFileSystem(
-                        new URI("jij:" + (sharedLibraryPathInModFile.toAbsolutePath().toUri().getRawSchemeSpecificPart())).normalize(),
-                        ImmutableMap.of("packagePath", sharedLibraryPathInModFile)
-                );
-                jarPaths.add(sharedLibraryZipFS.getPath("/"));
-            }
+    protected NestedJarMounter.Mounted mountNestedJars(IModFile file, String versionPath, String sharedLibraryPath) {
+        try (var phase = timings.start(StartupPhase.MOUNT, versionPath)) {
+            return mounter.mount(file.getFilePath(), versionPath, sharedLibraryPath, file::findResource, phase);
+        } catch (Exception e) {
+            throw loadingFailed(file, versionPath, e);
+        }
+    }
 
-            var jar = JarContents.of(jarPaths);
-            var providerResult = pipeline.readModFile(jar, ModFileDiscoveryAttributes.DEFAULT.withParent(file));
-            return Optional.ofNullable(providerResult);
+    protected Optional<IModFile> loadModFileFrom(NestedJar nestedJar, IDiscoveryPipeline pipeline) {
+        try {
+            return timings.time(StartupPhase.MOD_FILE, nestedJar.versionPath(), () -> {
+                var providerResult = pipeline.readModFile(JarContents.of(nestedJar.mounted().roots()), ModFileDiscoveryAttributes.DEFAULT.withParent(nestedJar.parent()));
+                if (providerResult == null) {
+                    nestedJar.mounted().release();
+                    return Optional.empty();
+                }
+                nestedJar.mounted().bindTo(providerResult); // The mounts stay open as long as the mod file is around
+                return Optional.of(providerResult);
+            });
         } catch (Exception e) {
-            LOGGER.error("Failed to load mod file {} from {}", versionPath, file.getFileName());
-            RuntimeException exception = new ModFileLoadingException("Failed to load mod file " + file.getFileName());
-            exception.initCause(e);
-            throw exception;
+            nestedJar.mounted().release();
+            throw loadingFailed(nestedJar.parent(), nestedJar.versionPath(), e);
         }
     }
 
+    private static RuntimeException loadingFailed(IModFile file, String versionPath, Exception cause) {
+        LOGGER.error("Failed to load mod file {} from {}", versionPath, file.getFileName());
+        RuntimeException exception = new ModFileLoadingException("Failed to load mod file " + file.getFileName());
+        exception.initCause(cause);
+        return exception;
+    }
+
     protected Optional<InputStream> loadResourceFromModFile(IModFile modFile, String path) {
         try {
             return Optional.of(Files.newInputStream(modFile.findResource(path)));
@@ -0,0 +1,264 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Precompiled form of a {@link ForgixVersionJson}, generated at build time and stored next to the manifest.
+ * <p>
+ * It holds a direct lookup table for the Minecraft versions known at build time, plus the boundaries of the
+ * {@link VersionRangeIndex} with every bound pre-parsed into its numeric components. Reading it only takes a handful
+ * of primitive reads, and resolving a version needs neither Gson nor maven-artifact.
+ * <p>
+ * Versions that aren't in the lookup table and aren't plain numeric versions (e.g. snapshots), as well as indexes
+ * whose ranges aren't all plain numeric versions, can't be resolved here; callers fall back to the json manifest.
+ * The index records the size and checksum of the manifest it was generated from, the same CRC-32 the jar records for
+ * the manifest, so a stale index is told apart without reading the manifest.
+ * <p>
+ * Kept free of anything but the JDK and this package, as the build compiles the index with this very class.
+ */
+public final class BinaryVersionIndex {
+    public static final String LOCATION = "META-INF/forgix/multiversion.idx";
+    private static final int MAGIC = 0x46475849; // FGXI
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_PATH = -1;
+
+    private final long manifestSize;
+    private final long manifestChecksum;
+    private final String sharedLibrary;
+    private final String[] paths;
+    private final Map<String, Integer> knownVersions;
+    private final int[][] boundaries; // null if any bound isn't a plain numeric version
+    private final int[] pointPaths;
+    private final int[] gapPaths;
+
+    private BinaryVersionIndex(long manifestSize, long manifestChecksum, String sharedLibrary, String[] paths,
+                               Map<String, Integer> knownVersions, int[][] boundaries, int[] pointPaths, int[] gapPaths) {
+        this.manifestSize = manifestSize;
+        this.manifestChecksum = manifestChecksum;
+        this.sharedLibrary = sharedLibrary;
+        this.paths = paths;
+        this.knownVersions = knownVersions;
+        this.boundaries = boundaries;
+        this.pointPaths = pointPaths;
+        this.gapPaths = gapPaths;
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param inputStream The input stream, not closed by this method
+     * @return The index
+     * @throws IOException If the stream can't be read or isn't an index of a supported format
+     */
+    public static BinaryVersionIndex read(InputStream inputStream) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC) throw new IOException("Not a Forgix multiversion index");
+        int formatVersion = in.readUnsignedShort();
+        if (formatVersion != FORMAT_VERSION) throw new IOException("Unsupported multiversion index format " + formatVersion);
+
+        long manifestSize = in.readLong();
+        long manifestChecksum = in.readLong();
+        String sharedLibrary = in.readBoolean() ? in.readUTF() : null;
+
+        var paths = new String[in.readInt()];
+        for (int i = 0; i < paths.length; i++) paths[i] = in.readUTF();
+
+        int knownCount = in.readInt();
+        Map<String, Integer> knownVersions = new HashMap<>(knownCount * 2);
+        for (int i = 0; i < knownCount; i++) knownVersions.put(in.readUTF(), in.readInt());
+
+        int boundaryCount = in.readInt();
+        int[][] boundaries = null;
+        int[] pointPaths = null;
+        int[] gapPaths = null;
+        if (boundaryCount >= 0) {
+            boundaries = new int[boundaryCount][];
+            for (int i = 0; i < boundaryCount; i++) {
+                var components = new int[in.readUnsignedByte()];
+                for (int j = 0; j < components.length; j++) components[j] = in.readInt();
+                boundaries[i] = components;
+            }
+            pointPaths = new int[boundaryCount];
+            for (int i = 0; i < boundaryCount; i++) pointPaths[i] = in.readInt();
+            gapPaths = new int[boundaryCount + 1];
+            for (int i = 0; i <= boundaryCount; i++) gapPaths[i] = in.readInt();
+        }
+
+        return new BinaryVersionIndex(manifestSize, manifestChecksum, sharedLibrary, paths, knownVersions, boundaries, pointPaths, gapPaths);
+    }
+
+    /**
+     * Compiles the manifest and writes its index.
+     *
+     * @param forgixVersionJson The parsed manifest
+     * @param manifestSize      The size of the manifest file in bytes
+     * @param manifestChecksum  The checksum of the manifest file, see {@link #checksum(InputStream)}
+     * @param knownVersions     The Minecraft versions to precompute a direct lookup for
+     * @param outputStream      The output stream, not closed by this method
+     */
+    public static void write(ForgixVersionJson forgixVersionJson, long manifestSize, long manifestChecksum,
+                             Collection<String> knownVersions, OutputStream outputStream) throws IOException {
+        var index = forgixVersionJson.getIndex();
+        if (!index.getMalformedRanges().isEmpty()) {
+            throw new IOException("Malformed version ranges " + index.getMalformedRanges());
+        }
+
+        List<String> paths = new ArrayList<>();
+        Map<String, Integer> pathIndexes = new HashMap<>();
+        var out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeLong(manifestSize);
+        out.writeLong(manifestChecksum);
+        out.writeBoolean(forgixVersionJson.getSharedLibrary() != null);
+        if (forgixVersionJson.getSharedLibrary() != null) out.writeUTF(forgixVersionJson.getSharedLibrary());
+
+        for (var path : forgixVersionJson.getVersions().values()) {
+            if (pathIndexes.putIfAbsent(path, paths.size()) == null) paths.add(path);
+        }
+        out.writeInt(paths.size());
+        for (var path : paths) out.writeUTF(path);
+
+        var distinctKnownVersions = new LinkedHashSet<>(knownVersions);
+        out.writeInt(distinctKnownVersions.size());
+        for (var version : distinctKnownVersions) {
+            out.writeUTF(version);
+            out.writeInt(pathIndex(pathIndexes, index.lookup(version)));
+        }
+
+        List<int[]> boundaries = new ArrayList<>();
+        for (var boundary : index.boundaries()) {
+            var components = parseNumeric(boundary.toString());
+            if (components == null) {
+                boundaries = null;
+                break;
+            }
+            boundaries.add(components);
+        }
+        if (boundaries == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(boundaries.size());
+            for (var components : boundaries) {
+                out.writeByte(components.length);
+                for (int component : components) out.writeInt(component);
+            }
+            for (var path : index.pointPaths()) out.writeInt(pathIndex(pathIndexes, path));
+            for (var path : index.gapPaths()) out.writeInt(pathIndex(pathIndexes, path));
+        }
+        out.flush();
+    }
+
+    private static int pathIndex(Map<String, Integer> pathIndexes, String path) {
+        return path == null ? NO_PATH : pathIndexes.get(path);
+    }
+
+    /**
+     * Computes the checksum of a manifest, which the index records to detect that it's stale.
+     *
+     * @param inputStream The manifest, read fully but not closed
+     * @return The CRC-32 of the manifest
+     */
+    public static long checksum(InputStream inputStream) throws IOException {
+        var crc = new CRC32();
+        var buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) crc.update(buffer, 0, read);
+        return crc.getValue();
+    }
+
+    /**
+     * Checks whether this index was generated from the given manifest.
+     *
+     * @param manifestSize     The size of the manifest file in bytes
+     * @param manifestChecksum The checksum of the manifest file
+     * @return true if the index is up-to-date, false if it's stale
+     */
+    public boolean isGeneratedFrom(long manifestSize, long manifestChecksum) {
+        return this.manifestSize == manifestSize && this.manifestChecksum == manifestChecksum;
+    }
+
+    /**
+     * Checks whether the given version can be resolved by this index, without the json manifest.
+     *
+     * @param version The version to check
+     * @return true if {@link #getPathForVersion(String)} can resolve the version
+     */
+    public boolean canResolve(String version) {
+        return knownVersions.containsKey(version) || (boundaries != null && parseNumeric(version) != null);
+    }
+
+    /**
+     * Gets the path for the highest matching version range for the given version.
+     * Only valid for versions this index {@link #canResolve(String) can resolve}.
+     *
+     * @param version The version to check
+     * @return The path for the highest matching version range, or null if no match is found
+     */
+    public String getPathForVersion(String version) {
+        var known = knownVersions.get(version);
+        if (known != null) return path(known);
+
+        var components = parseNumeric(version);
+        if (boundaries == null || components == null) throw new IllegalArgumentException("Version " + version + " can't be resolved by the index");
+        int low = 0;
+        int high = boundaries.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareNumeric(boundaries[middle], components);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return path(pointPaths[middle]);
+        }
+        return path(gapPaths[low]);
+    }
+
+    public String getSharedLibrary() {
+        return sharedLibrary;
+    }
+
+    private String path(int index) {
+        return index == NO_PATH ? null : paths[index];
+    }
+
+    // Plain numeric versions like 1.20.4, anything else (qualifiers, snapshots) is left to the json manifest
+    static int[] parseNumeric(String version) {
+        if (version == null || version.isEmpty()) return null;
+        int count = 1;
+        for (int i = 0; i < version.length(); i++) {
+            char c = version.charAt(i);
+            if (c == '.') count++;
+            else if (c < '0' || c > '9') return null;
+        }
+        if (count > 255) return null;
+
+        var components = new int[count];
+        int component = 0;
+        long value = 0;
+        boolean empty = true;
+        for (int i = 0; i <= version.length(); i++) {
+            if (i == version.length() || version.charAt(i) == '.') {
+                if (empty) return null;
+                components[component++] = (int) value;
+                value = 0;
+                empty = true;
+            } else {
+                value = value * 10 + (version.charAt(i) - '0');
+                if (value > Integer.MAX_VALUE) return null;
+                empty = false;
+            }
+        }
+        return components;
+    }
+
+    // Missing components count as 0, so 1.16 and 1.16.0 are equal like they are to maven
+    static int compareNumeric(int[] a, int[] b) {
+        for (int i = 0; i < Math.max(a.length, b.length); i++) {
+            int comparison = Integer.compare(i < a.length ? a[i] : 0, i < b.length ? b[i] : 0);
+            if (comparison != 0) return comparison;
+        }
+        return 0;
+    }
+}
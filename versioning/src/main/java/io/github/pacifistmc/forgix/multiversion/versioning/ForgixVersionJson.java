@@ -11,15 +11,13 @@ package io.github.pacifistmc.forgix.multiversion.versioning;
 //}
 //```
 
-import org.apache.maven.artifact.versioning.ArtifactVersion;
-
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class ForgixVersionJson {
     private final Map<String, String> versions;
     private String sharedLibrary;
+    private transient volatile VersionRangeIndex index; // Compiled on first lookup, not part of the json
 
     public ForgixVersionJson() {
         this.versions = new HashMap<>();
@@ -45,16 +43,28 @@ public class ForgixVersionJson {
      * @return The path for the highest matching version range, or null if no match is found
      */
     public String getPathForVersion(String version) {
-        return versions.entrySet().stream()
-                .filter(entry -> VersionRangeParser.containsVersion(entry.getKey(), version))
-                .max((a, b) -> {
-                    ArtifactVersion versionA = VersionRangeParser.getLowerBound(a.getKey());
-                    ArtifactVersion versionB = VersionRangeParser.getLowerBound(b.getKey());
-                    if (versionA == null) return -1;
-                    if (versionB == null) return 1;
-                    return versionA.compareTo(versionB);
-                })
-                .map(Map.Entry::getValue)
-                .orElse(null);
+        return getIndex().lookup(version);
+    }
+
+    /**
+     * Gets the compiled index of the version ranges, compiling it on first use.
+     * Malformed ranges are reported once, when the index is compiled.
+     *
+     * @return The compiled version range index
+     */
+    public VersionRangeIndex getIndex() {
+        var index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = VersionRangeIndex.compile(versions);
+                    index.getMalformedRanges().forEach((range, reason) ->
+                            System.err.println("Error parsing version range '" + range + "': " + reason));
+                    this.index = index;
+                }
+            }
+        }
+        return index;
     }
 }
@@ -0,0 +1,18 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+/**
+ * A single interval of a version range, e.g. [1.0,2.0). A null bound is unbounded.
+ */
+record Interval<V extends Comparable<? super V>>(V lower, boolean lowerInclusive, V upper, boolean upperInclusive) {
+    boolean contains(V version) {
+        if (lower != null) {
+            int comparison = lower.compareTo(version);
+            if (comparison > 0 || (comparison == 0 && !lowerInclusive)) return false;
+        }
+        if (upper != null) {
+            int comparison = upper.compareTo(version);
+            return comparison > 0 || (comparison == 0 && upperInclusive);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import java.util.Arrays;
+
+/**
+ * A Minecraft version, ordered the way Minecraft versions are actually released.
+ * <p>
+ * Releases, pre-releases, release candidates and named snapshots (e.g. 1.20.4, 1.21-pre1, 1.21-rc1, 26.1-snapshot-1)
+ * are packed into a single long, so comparing them is a single long comparison:
+ * <pre>
+ * major (16 bits) | minor (16 bits) | patch (16 bits) | stage (4 bits) | stage number (12 bits)
+ * </pre>
+ * For a given release the stages are ordered snapshot &lt; pre-release &lt; release candidate &lt; release, and a
+ * missing component counts as 0, so 1.16 and 1.16.0 are equal.
+ * <p>
+ * Weekly snapshots (e.g. 24w14a) don't name the release they lead to, so they're placed right before it using a table
+ * of the last snapshot week of every release cycle. Snapshots newer than the table lead to a release that's newer than
+ * the table too, possibly a patch of its last major and minor that was released since (e.g. 1.21.10), so they come
+ * after every release of that major and minor, but before the next one (e.g. 26.1). Among themselves, snapshots are
+ * ordered by year, week and letter.
+ * <p>
+ * Anything else (combat tests, the odd April Fools name) isn't a Minecraft version as far as this class is concerned,
+ * {@link #parse(String)} returns null and callers fall back to Maven's ordering.
+ */
+public final class MinecraftVersion implements Comparable<MinecraftVersion> {
+    private static final int STAGE_SNAPSHOT = 0;
+    private static final int STAGE_PRE_RELEASE = 1;
+    private static final int STAGE_RELEASE_CANDIDATE = 2;
+    private static final int STAGE_RELEASE = 3;
+    private static final int MAX_STAGE_NUMBER = 0xFFF;
+
+    // Last snapshot week (yyww) of every release cycle, and the release the cycle led to
+    private static final int[] SNAPSHOT_CYCLE_ENDS = {
+            1150, 1208, 1230, 1242, 1312, 1326, 1343, 1434, 1607, 1621, 1644, 1718, 1822, 1914, 1946, 2022, 2030,
+            2120, 2144, 2219, 2224, 2246, 2307, 2318, 2335, 2346, 2414, 2421, 2440, 2446, 2510, 2521, 2537, 2546
+    };
+    private static final long[] SNAPSHOT_CYCLE_RELEASES = Arrays.stream(new String[] {
+            "1.1", "1.2.1", "1.3.1", "1.4.2", "1.5.1", "1.6.1", "1.7.2", "1.8", "1.9", "1.10", "1.11", "1.12", "1.13",
+            "1.14", "1.15", "1.16", "1.16.2", "1.17", "1.18", "1.19", "1.19.1", "1.19.3", "1.19.4", "1.20", "1.20.2",
+            "1.20.3", "1.20.5", "1.21", "1.21.2", "1.21.4", "1.21.5", "1.21.6", "1.21.9", "1.21.11"
+    }).mapToLong(version -> parse(version).key).toArray();
+
+    private final long key;
+    private final int snapshot; // Year, week and letter of a weekly snapshot, 0 for everything else
+    private final String text;
+
+    private MinecraftVersion(long key, int snapshot, String text) {
+        this.key = key;
+        this.snapshot = snapshot;
+        this.text = text;
+    }
+
+    /**
+     * Parses a Minecraft version.
+     *
+     * @param version The version, e.g. 1.20.4, 1.21-pre1, 1.21 Pre-Release 1, 1.21-rc1, 1.21 Release Candidate 1 or 24w14a
+     * @return The version, or null if it isn't a Minecraft version
+     */
+    public static MinecraftVersion parse(String version) {
+        if (version == null || version.isEmpty()) return null;
+        if (isWeeklySnapshot(version)) return weeklySnapshot(version);
+
+        // The release part, up to three numeric components
+        long[] components = new long[3];
+        int count = 0;
+        int i = 0;
+        while (true) {
+            int start = i;
+            long value = 0;
+            while (i < version.length() && isDigit(version.charAt(i))) {
+                value = value * 10 + (version.charAt(i++) - '0');
+                if (value > 0xFFFF) return null;
+            }
+            if (i == start || count == 3) return null;
+            components[count++] = value;
+            if (i < version.length() && version.charAt(i) == '.') i++;
+            else break;
+        }
+        if (components[0] > Short.MAX_VALUE) return null; // Keeps the key positive
+
+        int stage;
+        int number;
+        var suffix = version.substring(i);
+        if (suffix.isEmpty()) {
+            stage = STAGE_RELEASE;
+            number = 0;
+        } else if ((number = stageNumber(suffix, "-pre")) >= 0 || (number = stageNumber(suffix, " Pre-Release ")) >= 0) {
+            stage = STAGE_PRE_RELEASE;
+        } else if ((number = stageNumber(suffix, "-rc")) >= 0 || (number = stageNumber(suffix, " Release Candidate ")) >= 0) {
+            stage = STAGE_RELEASE_CANDIDATE;
+        } else if ((number = stageNumber(suffix, "-snapshot-")) >= 0) {
+            stage = STAGE_SNAPSHOT;
+        } else {
+            return null;
+        }
+
+        long key = components[0] << 48 | components[1] << 32 | components[2] << 16 | (long) stage << 12 | number;
+        return new MinecraftVersion(key, 0, version);
+    }
+
+    // The number after the prefix, or -1 if the suffix isn't the prefix followed by a number
+    private static int stageNumber(String suffix, String prefix) {
+        if (!suffix.startsWith(prefix) || suffix.length() == prefix.length()) return -1;
+        int number = 0;
+        for (int i = prefix.length(); i < suffix.length(); i++) {
+            char c = suffix.charAt(i);
+            if (!isDigit(c)) return -1;
+            number = number * 10 + (c - '0');
+            if (number > MAX_STAGE_NUMBER) return -1;
+        }
+        return number;
+    }
+
+    private static boolean isWeeklySnapshot(String version) {
+        return version.length() > 5 && isDigit(version.charAt(0)) && isDigit(version.charAt(1)) && version.charAt(2) == 'w' &&
+                isDigit(version.charAt(3)) && isDigit(version.charAt(4));
+    }
+
+    private static MinecraftVersion weeklySnapshot(String version) {
+        int week = (version.charAt(0) - '0') * 1000 + (version.charAt(1) - '0') * 100 + (version.charAt(3) - '0') * 10 + (version.charAt(4) - '0');
+        var suffix = version.substring(5);
+        // Single letters in order, longer suffixes (April Fools snapshots) after them
+        int letter = suffix.length() == 1 && suffix.charAt(0) >= 'a' && suffix.charAt(0) <= 'z' ? suffix.charAt(0) - 'a' + 1 : 27;
+
+        int cycle = Arrays.binarySearch(SNAPSHOT_CYCLE_ENDS, week);
+        if (cycle < 0) cycle = -cycle - 1;
+        long key;
+        if (cycle < SNAPSHOT_CYCLE_ENDS.length) {
+            key = SNAPSHOT_CYCLE_RELEASES[cycle] & ~0xFFFFL | (long) STAGE_SNAPSHOT << 12;
+        } else { // Leads to a release we don't know yet, placed after every patch of the last major and minor we do know
+            int weeksSinceTable = Math.min(week - SNAPSHOT_CYCLE_ENDS[SNAPSHOT_CYCLE_ENDS.length - 1], MAX_STAGE_NUMBER);
+            key = SNAPSHOT_CYCLE_RELEASES[SNAPSHOT_CYCLE_RELEASES.length - 1] & ~0xFFFFFFFFL | 0xFFFFL << 16 | (long) STAGE_SNAPSHOT << 12 | weeksSinceTable;
+        }
+        return new MinecraftVersion(key, week * 32 + letter, version);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return true if this is a release, not a snapshot, pre-release or release candidate
+     */
+    public boolean isRelease() {
+        return snapshot == 0 && (key >> 12 & 0xF) == STAGE_RELEASE && (key & MAX_STAGE_NUMBER) == 0;
+    }
+
+    @Override
+    public int compareTo(MinecraftVersion other) {
+        int comparison = Long.compare(key, other.key);
+        return comparison != 0 ? comparison : Integer.compare(snapshot, other.snapshot);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MinecraftVersion that && that.key == key && that.snapshot == snapshot;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key) * 31 + snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
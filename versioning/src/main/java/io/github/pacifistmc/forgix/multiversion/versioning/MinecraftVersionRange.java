@@ -0,0 +1,96 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A version range in Maven's syntax (see {@link VersionRangeParser}) over {@link MinecraftVersion Minecraft versions}.
+ */
+public final class MinecraftVersionRange {
+    private final List<Interval<MinecraftVersion>> intervals;
+
+    private MinecraftVersionRange(List<Interval<MinecraftVersion>> intervals) {
+        this.intervals = intervals;
+    }
+
+    /**
+     * Parses a version range. A plain version (e.g. "1.0") only matches that exact version.
+     *
+     * @param spec The version range
+     * @return The range, or null if it's malformed or one of its bounds isn't a Minecraft version
+     */
+    public static MinecraftVersionRange parse(String spec) {
+        if (spec == null || spec.isBlank()) return null;
+        spec = spec.trim();
+        char first = spec.charAt(0);
+        if (first != '[' && first != '(') {
+            var version = MinecraftVersion.parse(spec);
+            return version == null ? null : new MinecraftVersionRange(List.of(new Interval<>(version, true, version, true)));
+        }
+
+        List<Interval<MinecraftVersion>> intervals = new ArrayList<>();
+        int i = 0;
+        while (i < spec.length()) {
+            char open = spec.charAt(i);
+            if (open != '[' && open != '(') return null;
+            int close = i + 1;
+            while (close < spec.length() && spec.charAt(close) != ']' && spec.charAt(close) != ')') close++;
+            if (close == spec.length()) return null;
+
+            var interval = parseInterval(spec.substring(i + 1, close), open == '[', spec.charAt(close) == ']');
+            if (interval == null) return null;
+            // Intervals have to be in order and can't overlap, same as Maven requires
+            if (!intervals.isEmpty()) {
+                var previous = intervals.get(intervals.size() - 1);
+                if (previous.upper() == null || interval.lower() == null || previous.upper().compareTo(interval.lower()) > 0) return null;
+            }
+            intervals.add(interval);
+
+            i = close + 1;
+            if (i < spec.length()) {
+                if (spec.charAt(i) != ',') return null;
+                i++;
+            }
+        }
+        return intervals.isEmpty() ? null : new MinecraftVersionRange(List.copyOf(intervals));
+    }
+
+    private static Interval<MinecraftVersion> parseInterval(String content, boolean lowerInclusive, boolean upperInclusive) {
+        int comma = content.indexOf(',');
+        if (comma < 0) { // [1.0] is exactly 1.0
+            if (!lowerInclusive || !upperInclusive) return null;
+            var version = MinecraftVersion.parse(content.trim());
+            return version == null ? null : new Interval<>(version, true, version, true);
+        }
+        if (content.indexOf(',', comma + 1) >= 0) return null;
+
+        var lowerText = content.substring(0, comma).trim();
+        var upperText = content.substring(comma + 1).trim();
+        var lower = lowerText.isEmpty() ? null : MinecraftVersion.parse(lowerText);
+        var upper = upperText.isEmpty() ? null : MinecraftVersion.parse(upperText);
+        if ((!lowerText.isEmpty() && lower == null) || (!upperText.isEmpty() && upper == null)) return null;
+        if ((lower == null && lowerInclusive) || (upper == null && upperInclusive)) return null; // [,1.0] isn't valid
+        if (lower != null && upper != null) {
+            int comparison = lower.compareTo(upper);
+            if (comparison > 0 || (comparison == 0 && !(lowerInclusive && upperInclusive))) return null;
+        }
+        return new Interval<>(lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * Checks whether the given version is contained in this range.
+     *
+     * @param version The version to check
+     * @return true if the version is contained in the range, false otherwise
+     */
+    public boolean containsVersion(MinecraftVersion version) {
+        for (var interval : intervals) {
+            if (interval.contains(version)) return true;
+        }
+        return false;
+    }
+
+    List<Interval<MinecraftVersion>> intervals() {
+        return intervals;
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.Restriction;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, thread-safe lookup table compiled from the version ranges of a {@link ForgixVersionJson}.
+ * <p>
+ * Every bound of every range is collected into one sorted array of boundaries. Those boundaries split the version
+ * line into regions (the boundaries themselves and the open gaps between them), and inside a region the set of
+ * matching ranges can't change. The winning path for every region is therefore computed once when the index is
+ * compiled, and a lookup is a single binary search over the boundaries.
+ * <p>
+ * The winner of a region is the matching range with the highest lower bound, a range without a lower bound being the
+ * lowest. Ties are won by the range declared first in the manifest.
+ * <p>
+ * When every bound is a {@link MinecraftVersion}, Minecraft versions are looked up in Minecraft's own ordering, so
+ * snapshots, pre-releases and release candidates land next to the release they belong to. Anything else is looked up
+ * in Maven's ordering.
+ */
+public final class VersionRangeIndex {
+    private final Table<ArtifactVersion> mavenTable;
+    private final Table<MinecraftVersion> minecraftTable; // null if a bound isn't a Minecraft version
+    private final Map<String, String> malformedRanges;
+
+    private VersionRangeIndex(Table<ArtifactVersion> mavenTable, Table<MinecraftVersion> minecraftTable, Map<String, String> malformedRanges) {
+        this.mavenTable = mavenTable;
+        this.minecraftTable = minecraftTable;
+        this.malformedRanges = malformedRanges;
+    }
+
+    /**
+     * Compiles the given map of version ranges to paths into an index.
+     * Ranges that can't be parsed are left out of the index and reported by {@link #getMalformedRanges()}.
+     *
+     * @param versions The version ranges mapped to their paths, in declaration order
+     * @return The compiled index
+     */
+    public static VersionRangeIndex compile(Map<String, String> versions) {
+        List<CompiledRange<ArtifactVersion>> mavenRanges = new ArrayList<>();
+        List<CompiledRange<MinecraftVersion>> minecraftRanges = new ArrayList<>();
+        Map<String, String> malformedRanges = new LinkedHashMap<>();
+
+        for (var entry : versions.entrySet()) {
+            try {
+                mavenRanges.add(parseMaven(entry.getKey(), entry.getValue()));
+            } catch (Exception e) {
+                malformedRanges.put(String.valueOf(entry.getKey()), String.valueOf(e.getMessage()));
+                continue;
+            }
+            var minecraftRange = MinecraftVersionRange.parse(entry.getKey());
+            if (minecraftRanges != null && minecraftRange != null) {
+                minecraftRanges.add(new CompiledRange<>(entry.getValue(), minecraftRange.intervals()));
+            } else {
+                minecraftRanges = null;
+            }
+        }
+
+        return new VersionRangeIndex(Table.compile(mavenRanges), minecraftRanges == null ? null : Table.compile(minecraftRanges),
+                Collections.unmodifiableMap(malformedRanges));
+    }
+
+    private static CompiledRange<ArtifactVersion> parseMaven(String rangeStr, String path) throws Exception {
+        if (rangeStr == null || rangeStr.isBlank()) throw new IllegalArgumentException("Range cannot be empty");
+        if (path == null) throw new IllegalArgumentException("Path cannot be null");
+
+        // A plain version number (e.g. "1.0") only matches that exact version
+        boolean plainVersion = rangeStr.indexOf(',') < 0 && rangeStr.indexOf('(') < 0 && rangeStr.indexOf('[') < 0 &&
+                rangeStr.indexOf(')') < 0 && rangeStr.indexOf(']') < 0;
+        var range = VersionRange.createFromVersionSpec(plainVersion ? "[" + rangeStr + "]" : rangeStr);
+        List<Interval<ArtifactVersion>> intervals = new ArrayList<>();
+        for (Restriction restriction : range.getRestrictions()) {
+            intervals.add(new Interval<>(restriction.getLowerBound(), restriction.isLowerBoundInclusive(),
+                    restriction.getUpperBound(), restriction.isUpperBoundInclusive()));
+        }
+        return new CompiledRange<>(path, List.copyOf(intervals));
+    }
+
+    /**
+     * Gets the path for the highest matching version range for the given version.
+     *
+     * @param version The version to check
+     * @return The path for the highest matching version range, or null if no match is found
+     */
+    public String lookup(String version) {
+        if (version == null) return null;
+        if (minecraftTable != null) {
+            var minecraftVersion = MinecraftVersion.parse(version);
+            if (minecraftVersion != null) return minecraftTable.lookup(minecraftVersion);
+        }
+        return mavenTable.lookup(new DefaultArtifactVersion(version));
+    }
+
+    /**
+     * Gets the ranges that could not be parsed when the index was compiled.
+     *
+     * @return The malformed ranges mapped to the reason they were rejected
+     */
+    public Map<String, String> getMalformedRanges() {
+        return malformedRanges;
+    }
+
+    // Exposed for BinaryVersionIndex, which precompiles this index at build time. It only keeps the boundaries when
+    // they're all plain numeric versions, which both orderings agree on.
+
+    List<ArtifactVersion> boundaries() {
+        return mavenTable.boundaries;
+    }
+
+    String[] pointPaths() {
+        return mavenTable.pointPaths;
+    }
+
+    String[] gapPaths() {
+        return mavenTable.gapPaths;
+    }
+
+    private record CompiledRange<V extends Comparable<? super V>>(String path, List<Interval<V>> intervals) {
+        // The lowest lower bound, same as VersionRangeParser.getMinVersion
+        private V lowerBound() {
+            V lowest = null;
+            for (var interval : intervals) {
+                if (interval.lower() != null && (lowest == null || interval.lower().compareTo(lowest) < 0)) lowest = interval.lower();
+            }
+            return lowest;
+        }
+
+        private boolean contains(V version) {
+            for (var interval : intervals) {
+                if (interval.contains(version)) return true;
+            }
+            return false;
+        }
+
+        // Every bound is a boundary of the index, so an interval either covers the whole gap or none of it
+        private boolean containsGap(V below, V above) {
+            for (var interval : intervals) {
+                var lower = interval.lower();
+                var upper = interval.upper();
+                boolean lowerOk = lower == null || (below != null && lower.compareTo(below) <= 0);
+                boolean upperOk = upper == null || (above != null && upper.compareTo(above) >= 0);
+                if (lowerOk && upperOk) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Table<V extends Comparable<? super V>> {
+        private final List<V> boundaries;
+        private final String[] pointPaths; // pointPaths[i] is the path for a version equal to boundaries[i]
+        private final String[] gapPaths; // gapPaths[i] is the path for a version between boundaries[i - 1] and boundaries[i]
+
+        private Table(List<V> boundaries, String[] pointPaths, String[] gapPaths) {
+            this.boundaries = boundaries;
+            this.pointPaths = pointPaths;
+            this.gapPaths = gapPaths;
+        }
+
+        private static <V extends Comparable<? super V>> Table<V> compile(List<CompiledRange<V>> ranges) {
+            List<V> bounds = new ArrayList<>();
+            for (var range : ranges) {
+                for (var interval : range.intervals()) {
+                    if (interval.lower() != null) bounds.add(interval.lower());
+                    if (interval.upper() != null) bounds.add(interval.upper());
+                }
+            }
+
+            // Sort and drop bounds that compare equal (e.g. "1.0" and "1.0.0")
+            bounds.sort(null);
+            List<V> distinct = new ArrayList<>(bounds.size());
+            for (var bound : bounds) {
+                if (distinct.isEmpty() || distinct.get(distinct.size() - 1).compareTo(bound) != 0) distinct.add(bound);
+            }
+
+            var pointPaths = new String[distinct.size()];
+            var gapPaths = new String[distinct.size() + 1];
+            for (int i = 0; i < distinct.size(); i++) {
+                pointPaths[i] = winner(ranges, distinct.get(i), null, null);
+            }
+            for (int i = 0; i <= distinct.size(); i++) {
+                var below = i == 0 ? null : distinct.get(i - 1);
+                var above = i == distinct.size() ? null : distinct.get(i);
+                gapPaths[i] = winner(ranges, null, below, above);
+            }
+            return new Table<>(List.copyOf(distinct), pointPaths, gapPaths);
+        }
+
+        private String lookup(V version) {
+            int index = Collections.binarySearch(boundaries, version);
+            return index >= 0 ? pointPaths[index] : gapPaths[-index - 1];
+        }
+
+        // Either point is set, or the region is the open gap between below and above (null meaning unbounded)
+        private static <V extends Comparable<? super V>> String winner(List<CompiledRange<V>> ranges, V point, V below, V above) {
+            CompiledRange<V> best = null;
+            for (var range : ranges) {
+                if (!(point != null ? range.contains(point) : range.containsGap(below, above))) continue;
+                if (best == null || compareLowerBounds(range.lowerBound(), best.lowerBound()) > 0) best = range;
+            }
+            return best == null ? null : best.path();
+        }
+
+        private static <V extends Comparable<? super V>> int compareLowerBounds(V a, V b) {
+            if (a == null) return b == null ? 0 : -1;
+            if (b == null) return 1;
+            return a.compareTo(b);
+        }
+    }
+}
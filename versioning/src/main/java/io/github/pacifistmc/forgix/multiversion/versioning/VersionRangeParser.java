@@ -29,6 +29,13 @@ public class VersionRangeParser {
      * @return true if the version is contained in the range, false otherwise
      */
     public static boolean containsVersion(String rangeStr, String version) {
+        // Minecraft versions are compared in Minecraft's own ordering, see MinecraftVersion
+        var minecraftVersion = MinecraftVersion.parse(version);
+        if (minecraftVersion != null) {
+            var minecraftRange = MinecraftVersionRange.parse(rangeStr);
+            if (minecraftRange != null) return minecraftRange.containsVersion(minecraftVersion);
+        }
+
         try {
             DefaultArtifactVersion artifactVersion = new DefaultArtifactVersion(version);
 
@@ -0,0 +1,9 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+/**
+ * The nested jars selected for the running Minecraft version.
+ *
+ * @param versionPath   The path of the version jar inside the mod jar
+ * @param sharedLibrary The path of the shared library inside the mod jar, or null if there is none
+ */
+public record VersionSelection(String versionPath, String sharedLibrary) { }
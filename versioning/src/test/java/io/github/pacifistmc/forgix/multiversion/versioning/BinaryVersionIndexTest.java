@@ -0,0 +1,101 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryVersionIndexTest {
+    private static final byte[] MANIFEST = "{\"versions\":{}}".getBytes(StandardCharsets.UTF_8);
+
+    private static ForgixVersionJson manifest(String... rangesAndPaths) {
+        var manifest = new ForgixVersionJson();
+        for (int i = 0; i < rangesAndPaths.length; i += 2) manifest.getVersions().put(rangesAndPaths[i], rangesAndPaths[i + 1]);
+        return manifest;
+    }
+
+    private static BinaryVersionIndex roundTrip(ForgixVersionJson manifest, Collection<String> knownVersions) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        BinaryVersionIndex.write(manifest, MANIFEST.length, BinaryVersionIndex.checksum(new ByteArrayInputStream(MANIFEST)), knownVersions, bytes);
+        return BinaryVersionIndex.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void resolvesLikeTheManifestItWasWrittenFrom() throws IOException {
+        var manifest = manifest(
+                "(,1.12.2]", "legacy.jar",
+                "[1.16.5,1.18)", "old.jar",
+                "[1.18,1.20.4)", "mid.jar",
+                "[1.20.4]", "exact.jar",
+                "[1.21,)", "new.jar");
+        var index = roundTrip(manifest, List.of());
+
+        for (var version : List.of("1.7.10", "1.12.2", "1.12.3", "1.16.4", "1.16.5", "1.17.1", "1.18", "1.20.3", "1.20.4", "1.20.4.0",
+                "1.20.5", "1.20.6", "1.21", "1.21.11", "26.1")) {
+            assertTrue(index.canResolve(version), version);
+            assertEquals(manifest.getPathForVersion(version), index.getPathForVersion(version), version);
+        }
+        assertNull(index.getPathForVersion("1.14"));
+    }
+
+    @Test
+    void looksUpKnownVersionsTheBoundariesCantResolve() throws IOException {
+        var manifest = manifest("[1.20.5-pre1,1.21)", "pre.jar", "[1.21,)", "new.jar");
+        var index = roundTrip(manifest, List.of("1.20.5-rc1", "1.21", "24w14a", "1.21"));
+
+        assertEquals(manifest.getPathForVersion("1.20.5-rc1"), index.getPathForVersion("1.20.5-rc1"));
+        assertEquals(manifest.getPathForVersion("24w14a"), index.getPathForVersion("24w14a"));
+        assertEquals("new.jar", index.getPathForVersion("1.21"));
+
+        // A qualified bound can't be compared numerically, so only the known versions resolve
+        assertFalse(index.canResolve("1.21.1"));
+        assertThrows(IllegalArgumentException.class, () -> index.getPathForVersion("1.21.1"));
+    }
+
+    @Test
+    void leavesUnknownQualifiedVersionsToTheManifest() throws IOException {
+        var index = roundTrip(manifest("[1.20,)", "new.jar"), List.of("1.20.1"));
+
+        assertTrue(index.canResolve("1.20.1"));
+        assertTrue(index.canResolve("1.20.2"));
+        assertFalse(index.canResolve("1.20.5-pre1"));
+        assertFalse(index.canResolve("24w14a"));
+        assertThrows(IllegalArgumentException.class, () -> index.getPathForVersion("24w14a"));
+    }
+
+    @Test
+    void keepsTheSharedLibrary() throws IOException {
+        var manifest = manifest("[1.20,)", "new.jar");
+        assertNull(roundTrip(manifest, List.of()).getSharedLibrary());
+
+        manifest.setSharedLibrary("META-INF/forgix/multiversion/shared.jar");
+        assertEquals("META-INF/forgix/multiversion/shared.jar", roundTrip(manifest, List.of()).getSharedLibrary());
+    }
+
+    @Test
+    void recordsTheManifestItWasGeneratedFrom() throws IOException {
+        var index = roundTrip(manifest("[1.20,)", "new.jar"), List.of());
+        long checksum = BinaryVersionIndex.checksum(new ByteArrayInputStream(MANIFEST));
+
+        assertTrue(index.isGeneratedFrom(MANIFEST.length, checksum));
+        assertFalse(index.isGeneratedFrom(MANIFEST.length + 1, checksum));
+        assertFalse(index.isGeneratedFrom(MANIFEST.length, checksum ^ 1));
+    }
+
+    @Test
+    void rejectsMalformedRanges() {
+        assertThrows(IOException.class, () -> roundTrip(manifest("[1.20,", "broken.jar"), List.of()));
+    }
+
+    @Test
+    void rejectsWhatIsNotAnIndex() {
+        var exception = assertThrows(IOException.class, () -> BinaryVersionIndex.read(new ByteArrayInputStream(MANIFEST)));
+        assertEquals("Not a Forgix multiversion index", exception.getMessage());
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.pacifistmc.forgix.multiversion.versioning;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinecraftVersionTest {
+    private static MinecraftVersion version(String version) {
+        var parsed = MinecraftVersion.parse(version);
+        assertNotNull(parsed, version);
+        return parsed;
+    }
+
+    // Every version is lower than the ones after it
+    private static void assertOrdered(String... versions) {
+        for (int i = 1; i < versions.length; i++) {
+            var lower = version(versions[i - 1]);
+            var higher = version(versions[i]);
+            assertTrue(lower.compareTo(higher) < 0, lower + " should be before " + higher);
+            assertTrue(higher.compareTo(lower) > 0, higher + " should be after " + lower);
+        }
+    }
+
+    @Test
+    void ordersReleasesByComponent() {
+        assertOrdered("1.7.10", "1.8", "1.8.9", "1.9", "1.10", "1.16.5", "1.20", "1.20.1", "1.20.10", "1.21", "26.1");
+    }
+
+    @Test
+    void treatsAMissingComponentAsZero() {
+        assertEquals(version("1.16"), version("1.16.0"));
+        assertEquals(0, version("1.16").compareTo(version("1.16.0")));
+        assertEquals(version("1.16").hashCode(), version("1.16.0").hashCode());
+    }
+
+    @Test
+    void ordersStagesBeforeTheirRelease() {
+        assertOrdered("1.20.6", "1.21-pre1", "1.21-pre2", "1.21-pre10", "1.21-rc1", "1.21-rc2", "1.21", "1.21.1");
+        assertOrdered("26.1-snapshot-1", "26.1-snapshot-2", "26.1-pre1", "26.1-rc1", "26.1");
+    }
+
+    @Test
+    void readsSpelledOutStages() {
+        assertEquals(version("1.21-pre1"), version("1.21 Pre-Release 1"));
+        assertEquals(version("1.21-rc1"), version("1.21 Release Candidate 1"));
+        assertOrdered("1.14 Pre-Release 5", "1.14");
+    }
+
+    @Test
+    void placesWeeklySnapshotsBeforeTheReleaseOfTheirCycle() {
+        assertOrdered("1.20.4", "23w51a", "24w14a", "1.20.5-pre1", "1.20.5");
+        assertOrdered("1.12.2", "17w43a", "18w22c", "1.13-pre1", "1.13");
+        assertOrdered("1.21.3", "24w46a", "1.21.4");
+        assertOrdered("1.21.4", "25w02a", "1.21.5");
+    }
+
+    @Test
+    void ordersWeeklySnapshotsOfACycleByWeekAndLetter() {
+        assertOrdered("24w03a", "24w03b", "24w04a", "24w14potato");
+        assertOrdered("24w14a", "24w14potato", "1.20.5");
+    }
+
+    @Test
+    void placesSnapshotsNewerThanTheTableAfterEveryPatchOfTheLastRelease() {
+        assertOrdered("1.21.10", "1.21.11", "25w50a", "26w01a", "26.1-snapshot-1", "26.1");
+        assertOrdered("1.21.10", "25w41a", "1.21.11");
+        assertOrdered("1.21.999", "25w50a", "1.22");
+    }
+
+    @Test
+    void sortsAMixOfEverything() {
+        var expected = List.of("1.20.4", "24w14a", "1.20.5-pre1", "1.20.5-rc1", "1.20.5", "1.21", "1.21.11", "25w50a", "26.1-snapshot-1", "26.1");
+        var shuffled = new ArrayList<>(expected.stream().map(MinecraftVersion::parse).toList());
+        Collections.reverse(shuffled);
+        Collections.sort(shuffled);
+        assertEquals(expected, shuffled.stream().map(MinecraftVersion::toString).toList());
+    }
+
+    @Test
+    void rejectsWhatIsNotAMinecraftVersion() {
+        for (var invalid : new String[] { null, "", "1.", ".1", "1..2", "1.2.3.4", "1.21-pre", "1.21-beta1", "a1.0", "1.21 Pre-Release", "99999.1", "3D Shareware v1.34", "1.21-rc1a" }) {
+            assertNull(MinecraftVersion.parse(invalid), invalid);
+        }
+    }
+
+    @Test
+    void knowsReleasesFromEverythingElse() {
+        assertTrue(version("1.20.4").isRelease());
+        assertTrue(version("1.16").isRelease());
+        assertFalse(version("1.21-pre1").isRelease());
+        assertFalse(version("1.21-rc1").isRelease());
+        assertFalse(version("24w14a").isRelease());
+        assertFalse(version("25w50a").isRelease());
+        assertFalse(version("26.1-snapshot-1").isRelease());
+    }
+
+    @Test
+    void keepsTheTextItWasParsedFrom() {
+        assertEquals("1.21 Pre-Release 1", version("1.21 Pre-Release 1").toString());
+        assertEquals("24w14a", version("24w14a").toString());
+    }
+}